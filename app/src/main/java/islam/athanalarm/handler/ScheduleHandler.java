@@ -13,14 +13,17 @@ import java.text.SimpleDateFormat;
 import java.util.Locale;
 import androidx.security.crypto.MasterKey;
 
+import net.sourceforge.jitl.DaySchedule;
 import net.sourceforge.jitl.Jitl;
 import net.sourceforge.jitl.Method;
 import net.sourceforge.jitl.Prayer;
 import net.sourceforge.jitl.astro.Location;
+import net.sourceforge.jitl.astro.SimpleDate;
 
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.TimeZone;
 
 import islam.athanalarm.CONSTANT;
 
@@ -32,17 +35,27 @@ public class ScheduleHandler {
 
         GregorianCalendar day = new GregorianCalendar();
         Jitl itl = new Jitl(location, method);
-        Prayer[] dayPrayers = itl.getPrayerTimes(day).getPrayers();
-        Prayer[] allTimes = new Prayer[]{dayPrayers[0], dayPrayers[1], dayPrayers[2], dayPrayers[3], dayPrayers[4], dayPrayers[5], itl.getNextDayFajr(day)};
+        DaySchedule daySchedule = new DaySchedule();
+        // Offsets of the device time zone on this day, DST changes included
+        itl.getDaySchedule(new SimpleDate(day), TimeZone.getDefault(), daySchedule);
+        Prayer[] allTimes = daySchedule.getPrayers();
 
         GregorianCalendar[] schedule = new GregorianCalendar[7];
         boolean[] extremes = new boolean[7];
         for (short i = CONSTANT.FAJR; i <= CONSTANT.NEXT_FAJR; i++) {
-            schedule[i] = new GregorianCalendar(day.get(Calendar.YEAR), day.get(Calendar.MONTH), day.get(Calendar.DAY_OF_MONTH), allTimes[i].getHour(), allTimes[i].getMinute(), allTimes[i].getSecond());
-            schedule[i].add(Calendar.MINUTE, offsetMinutes);
+            long instant = daySchedule.getInstant(i);
+            if (instant == Jitl.INVALID_INSTANT) {
+                schedule[i] = new GregorianCalendar(day.get(Calendar.YEAR), day.get(Calendar.MONTH), day.get(Calendar.DAY_OF_MONTH), allTimes[i].getHour(), allTimes[i].getMinute(), allTimes[i].getSecond());
+                schedule[i].add(Calendar.MINUTE, offsetMinutes);
+                if (i == CONSTANT.NEXT_FAJR) {
+                    schedule[i].add(Calendar.DAY_OF_MONTH, 1); // Next fajr is tomorrow
+                }
+            } else {
+                schedule[i] = new GregorianCalendar();
+                schedule[i].setTimeInMillis((instant + offsetMinutes * 60L) * 1000);
+            }
             extremes[i] = allTimes[i].isExtreme();
         }
-        schedule[CONSTANT.NEXT_FAJR].add(Calendar.DAY_OF_MONTH, 1); // Next fajr is tomorrow
 
         return new ScheduleData(schedule, extremes, getNextTimeIndex(schedule));
     }
@@ -0,0 +1,156 @@
+package net.sourceforge.jitl;
+
+import net.sourceforge.jitl.astro.Astro;
+import net.sourceforge.jitl.astro.AstroLib;
+import net.sourceforge.jitl.astro.LocationContext;
+import net.sourceforge.jitl.astro.Utils;
+
+/**
+ * Times at which the centre of the sun reaches any altitude, used for the
+ * events the methods do not define (duha, twilights, the night portions).
+ *
+ * The solver is bound to the three days window of a day loaded by Jitl.
+ * The terms which do not depend on the altitude (transit, interpolation
+ * differences of the right ascension and declination) are computed once by
+ * update, then each altitude takes the approximate time from the hour
+ * angle of the day declination (or of the declination at the transit or
+ * the turn of the night, for an altitude the sun barely reaches) and
+ * corrects it as getShoMag does for shurooq and maghrib. The correction is
+ * repeated, usually once or twice, until it is below a second. Near the
+ * highest and the lowest altitudes, where the sun turns back, the steps
+ * are bounded, and a time which does not converge to the altitude on its
+ * side of the transit is not returned. The altitudes are geometric, no
+ * refraction is added.
+ */
+class AltitudeSolver {
+	
+	/* Corrections of the approximate time, and correction in days below
+	 * which the time is kept */
+	private static final int CORRECTIONS = 8;
+	
+	private static final double PRECISION = 1e-5;
+	
+	/* Smallest sine of the hour angle used in a correction, which keeps the
+	 * steps bounded where the altitude is close to its extremum */
+	private static final double MIN_SIN_H = 0.05;
+	
+	/* Altitude difference in degrees above which the time is not kept */
+	private static final double ALTITUDE_PRECISION = 0.01;
+	
+	private double sinLat, cosLat, lon;
+	
+	private double sinDec, cosDec;
+	
+	/* Fraction of the day of the transit */
+	private double transit;
+	
+	private double sid, dra;
+	
+	/* Value of the middle day and interpolation differences of the right
+	 * ascension and the declination */
+	private double ra, raA, raB, dec, decA, decB;
+	
+	/**
+	 * Compute the terms shared by all the altitudes of a day
+	 * @param ctx terms of the location
+	 * @param astro topocentric values of the three days around the day
+	 */
+	void update(LocationContext ctx, Astro astro) {
+		double ra0, ra2;
+		
+		sinLat = ctx.getSinLat();
+		cosLat = ctx.getCosLat();
+		lon = ctx.getDegreeLong();
+		sinDec = Math.sin(Utils.DEG_TO_RAD(astro.getDec()[1]));
+		cosDec = Math.cos(Utils.DEG_TO_RAD(astro.getDec()[1]));
+		sid = astro.getSid()[1];
+		dra = Utils.RAD_TO_DEG(astro.getDra()[1]);
+		transit = AstroLib.limitAngle111((astro.getRa()[1] - lon - sid) / 360.0);
+		
+		/* Keep the three right ascensions continuous when they wrap at
+		 * the march equinox */
+		ra = astro.getRa()[1];
+		ra0 = astro.getRa()[0];
+		ra2 = astro.getRa()[2];
+		if (ra > 350 && ra2 < 10)
+			ra2 += 360;
+		if (ra0 > 350 && ra < 10)
+			ra0 -= 360;
+		raA = (ra - ra0) + (ra2 - ra);
+		raB = (ra2 - ra) - (ra - ra0);
+		
+		dec = astro.getDec()[1];
+		decA = (dec - astro.getDec()[0]) + (astro.getDec()[2] - dec);
+		decB = (astro.getDec()[2] - dec) - (dec - astro.getDec()[0]);
+	}
+	
+	/**
+	 * Time at which the sun reaches an altitude
+	 * @param alt geometric altitude of the centre of the sun in degrees
+	 * @param setting true for the time after the transit, false for the
+	 * time before
+	 * @param day days added to the approximate time, 1 giving the event of
+	 * the next day from the same window
+	 * @return hours since the midnight of the day, below 0 or above 24 when
+	 * the time falls on another day, or 99 if the sun does not reach the
+	 * altitude
+	 */
+	double getTime(double alt, boolean setting, int day) {
+		int i;
+		double cosH, M, dM, sidG, A, B, H, cosB, sinH, sunAlt;
+		
+		cosH = (Math.sin(Utils.DEG_TO_RAD(alt)) - sinLat * sinDec)
+				/ (cosLat * cosDec);
+		if (cosH <= -1 || cosH >= 1) {
+			/* An altitude close to the highest of the day or the lowest of
+			 * the night may still be reached with the declination of the
+			 * transit or of the turn of the night */
+			M = transit + day;
+			if (cosH <= -1)
+				M += setting ? 0.5 : -0.5;
+			B = Utils.DEG_TO_RAD(dec + M * (decA + decB * M) / 2.0);
+			cosH = (Math.sin(Utils.DEG_TO_RAD(alt)) - sinLat * Math.sin(B))
+					/ (cosLat * Math.cos(B));
+			if (cosH <= -1 || cosH >= 1)
+				return 99;
+		}
+		
+		/* Approximate time from the hour angle */
+		H = Utils.RAD_TO_DEG(Math.acos(cosH));
+		M = transit + day + (setting ? H : -H) / 360.0;
+		
+		/* Position of the sun at that time, and correction of the time by
+		 * the altitude difference */
+		dM = 1;
+		sunAlt = 0;
+		for (i = 0; i < CORRECTIONS; i++) {
+			sidG = AstroLib.limitAngle(sid + 360.985647 * M);
+			A = ra + M * (raA + raB * M) / 2.0;
+			B = dec + M * (decA + decB * M) / 2.0;
+			H = AstroLib.limitAngle180between(sidG + lon - A) - dra;
+			cosB = Math.cos(Utils.DEG_TO_RAD(B));
+			
+			sunAlt = Utils.RAD_TO_DEG(Math.asin(sinLat
+					* Math.sin(Utils.DEG_TO_RAD(B)) + cosLat * cosB
+					* Math.cos(Utils.DEG_TO_RAD(H))));
+			
+			sinH = Math.sin(Utils.DEG_TO_RAD(H));
+			if (Math.abs(sinH) < MIN_SIN_H)
+				sinH = (H < 0) ? -MIN_SIN_H : MIN_SIN_H;
+			dM = (sunAlt - alt) / (360.0 * cosB * cosLat * sinH);
+			M += dM;
+			if (Math.abs(dM) < PRECISION)
+				break;
+		}
+		
+		/* The corrections do not converge when the sun turns back before the
+		 * altitude, and may converge to the time on the other side of the
+		 * transit */
+		if (Math.abs(dM) >= PRECISION
+				|| Math.abs(sunAlt - alt) > ALTITUDE_PRECISION
+				|| (setting ? H <= 0 : H >= 0))
+			return 99;
+		
+		return 24.0 * M;
+	}
+}
@@ -0,0 +1,282 @@
+package net.sourceforge.jitl;
+
+import net.sourceforge.jitl.astro.AstroDay;
+import net.sourceforge.jitl.astro.AstroLib;
+import net.sourceforge.jitl.astro.Location;
+import net.sourceforge.jitl.astro.LocationContext;
+import net.sourceforge.jitl.astro.SimpleDate;
+import net.sourceforge.jitl.astro.SolarEphemeris;
+import net.sourceforge.jitl.astro.Utils;
+
+/**
+ * Prayer times of many locations for the same day.
+ *
+ * The solar values of the day are computed once for all the locations
+ * (they only depend on the julian day), then each step of the computation
+ * (location terms, topocentric values, prayer formulae) runs as a loop
+ * over primitive arrays holding one value per location. The formulae are
+ * the static helpers of Jitl and AstroLib over primitive values, so the
+ * results are identical.
+ *
+ * Locations needing an extreme latitude rule (any location for the
+ * methods applying the rule every day, only the locations having an
+ * invalid time for the others) are computed by a Jitl object.
+ *
+ * All the locations use the default pressure and temperature and no
+ * daylight saving time. A BatchJitl object is not thread-safe.
+ */
+public class BatchJitl {
+	
+	private Method method;
+	
+	private SolarEphemeris ephemeris = AstroLib.VSOP87;
+	
+	/* Geocentric values of the day before, the day and the day after */
+	private final double ra[] = new double[3], dec[] = new double[3],
+			sid[] = new double[3], rsum[] = new double[3];
+	
+	private final AstroDay astroDay = new AstroDay();
+	
+	/* Terms of LocationContext, one value per location */
+	private double sinLat[], cosLat[], topoCos[], topoSin[],
+			altitudeRefraction[];
+	
+	/* Pressure and temperature factor, the same for all the locations */
+	private double refraction;
+	
+	private final Location contextLoc = new Location(0, 0, 0, 0);
+	
+	private final LocationContext context = new LocationContext();
+	
+	/* Topocentric windows, the three days of location i at 3 * i, and
+	 * parallax in right ascension of the middle day */
+	private double topRa[], topDec[], topDra[];
+	
+	/* Results of the formulae in hours, 99 when invalid, the six times of
+	 * location i at 6 * i */
+	private double times[];
+	
+	/* A formula has no result, before the intervals are applied */
+	private boolean invalid[];
+	
+	private final Location scalarLoc = new Location(0, 0, 0, 0);
+	
+	private final Jitl scalar;
+	
+	private final DayPrayers scalarPrayers = new DayPrayers();
+	
+	private final Prayer prayer = new Prayer();
+	
+	/**
+	 * @param method the method used in the calculation
+	 */
+	public BatchJitl(Method method) {
+		this.method = method;
+		this.scalar = new Jitl(scalarLoc, method);
+		allocate(0);
+	}
+	
+	public void setMethod(Method method) {
+		this.method = method;
+		scalar.setMethod(method);
+	}
+	
+	/**
+	 * @param ephemeris source of the solar values
+	 * @see Jitl#setEphemeris(SolarEphemeris)
+	 */
+	public void setEphemeris(SolarEphemeris ephemeris) {
+		this.ephemeris = ephemeris;
+		scalar.setEphemeris(ephemeris);
+	}
+	
+	/**
+	 * Compute the prayer times of count locations for a day
+	 * @param date the date of prayers
+	 * @param gmtDiff difference with GMT shared by all the locations
+	 * @param degreeLat latitudes in degrees
+	 * @param degreeLong longitudes in degrees
+	 * @param seaLevel heights above sea level in meters
+	 * @param count number of locations, read from index 0 of the arrays
+	 * @param seconds receives 6 * count times in seconds since midnight,
+	 * ordered by prayer then location (all the fajr times, then all the
+	 * shuruq times...), Timetable.INVALID when a time cannot be computed
+	 * @param extremes receives the extreme switches in the same order as
+	 * seconds, can be null
+	 * @return the number of locations computed by Jitl because they needed
+	 * an extreme latitude rule
+	 */
+	public int getPrayerTimes(SimpleDate date, double gmtDiff,
+			double[] degreeLat, double[] degreeLong, double[] seaLevel,
+			int count, int[] seconds, boolean[] extremes) {
+		int i, k, scalars;
+		double julianDay;
+		
+		if (invalid.length < count) {
+			allocate(count);
+		}
+		
+		julianDay = AstroLib.getJulianDay(date, gmtDiff);
+		for (k = 0; k < 3; k++) {
+			ephemeris.computeAstroDay(julianDay + k - 1, astroDay);
+			ra[k] = astroDay.getRa();
+			dec[k] = astroDay.getDec();
+			sid[k] = astroDay.getSidtime();
+			rsum[k] = astroDay.getRsum();
+		}
+		
+		computeContexts(degreeLat, seaLevel, count);
+		for (k = 0; k < 3; k++) {
+			computeTopAstro(k, degreeLong, count);
+		}
+		computeTimes(degreeLat, degreeLong, count);
+		
+		scalars = 0;
+		for (i = 0; i < count; i++) {
+			if (Jitl.needsExtreme(method.getExtremeLatitude(), invalid[i])) {
+				computeScalar(date, gmtDiff, degreeLat[i], degreeLong[i],
+						seaLevel[i], i, count, seconds, extremes);
+				scalars++;
+				continue;
+			}
+			for (k = 0; k < Timetable.PRAYERS; k++) {
+				scalar.base6hm(times[6 * i + k], method, prayer,
+						Jitl.TIME_ARRAY[k]);
+				seconds[k * count + i] = toSeconds(prayer);
+				if (extremes != null) {
+					extremes[k * count + i] = false;
+				}
+			}
+		}
+		return scalars;
+	}
+	
+	private void computeScalar(SimpleDate date, double gmtDiff, double lat,
+			double lon, double sea, int i, int count, int[] seconds,
+			boolean[] extremes) {
+		int k;
+		Prayer[] prayers;
+		
+		scalarLoc.setDegreeLat(lat);
+		scalarLoc.setDegreeLong(lon);
+		scalarLoc.setSeaLevel(sea);
+		scalarLoc.setGmtDiff(gmtDiff);
+		scalar.getPrayerTimes(date, scalarPrayers);
+		
+		prayers = scalarPrayers.getPrayers();
+		for (k = 0; k < Timetable.PRAYERS; k++) {
+			seconds[k * count + i] = toSeconds(prayers[k]);
+			if (extremes != null) {
+				extremes[k * count + i] = prayers[k].isExtreme();
+			}
+		}
+	}
+	
+	private static int toSeconds(Prayer pt) {
+		if (pt.getHour() == 99) {
+			return Timetable.INVALID;
+		}
+		return pt.getHour() * 3600 + pt.getMinute() * 60 + pt.getSecond();
+	}
+	
+	private void allocate(int count) {
+		sinLat = new double[count];
+		cosLat = new double[count];
+		topoCos = new double[count];
+		topoSin = new double[count];
+		altitudeRefraction = new double[count];
+		topRa = new double[3 * count];
+		topDec = new double[3 * count];
+		topDra = new double[count];
+		times = new double[Timetable.PRAYERS * count];
+		invalid = new boolean[count];
+	}
+	
+	/* Terms of the LocationContext of each location */
+	private void computeContexts(double[] degreeLat, double[] seaLevel,
+			int count) {
+		int i;
+		
+		for (i = 0; i < count; i++) {
+			contextLoc.setDegreeLat(degreeLat[i]);
+			contextLoc.setSeaLevel(seaLevel[i]);
+			context.update(contextLoc);
+			sinLat[i] = context.getSinLat();
+			cosLat[i] = context.getCosLat();
+			topoCos[i] = context.getTopoCos();
+			topoSin[i] = context.getTopoSin();
+			altitudeRefraction[i] = context.getAltitudeRefraction();
+		}
+		refraction = context.getRefraction();
+	}
+	
+	/* AstroLib.computeTopAstro for day k of the window, the terms of the
+	 * day being computed once for all the locations */
+	private void computeTopAstro(int k, double[] degreeLong, int count) {
+		int i;
+		double lHour, sinSP, cosDec, sinDec, sinLHour, cosLHour, tRA0;
+		
+		sinSP = AstroLib.getSinParallax(rsum[k]);
+		cosDec = Math.cos(dec[k]);
+		sinDec = Math.sin(dec[k]);
+		
+		for (i = 0; i < count; i++) {
+			lHour = AstroLib.limitAngle(sid[k] + degreeLong[i] - ra[k]);
+			sinLHour = Math.sin(Utils.DEG_TO_RAD(lHour));
+			cosLHour = Math.cos(Utils.DEG_TO_RAD(lHour));
+			
+			tRA0 = AstroLib.getTopoDra(topoCos[i], sinSP, sinLHour, cosLHour,
+					cosDec);
+			topRa[3 * i + k] = ra[k] + Utils.RAD_TO_DEG(tRA0);
+			topDec[3 * i + k] = AstroLib.getTopoDec(topoCos[i], topoSin[i],
+					sinSP, cosLHour, sinDec, cosDec, tRA0);
+			if (k == 1) {
+				topDra[i] = tRA0;
+			}
+		}
+	}
+	
+	/* Formulae of Jitl.loadDay and Jitl.computeDay, intervals included,
+	 * before the extreme latitude rules. The terms used by several formulae
+	 * (sine and cosine of the declination, hour angle of sunrise and
+	 * sunset, sine of the angles) are computed once */
+	private void computeTimes(double[] degreeLat, double[] degreeLong,
+			int count) {
+		int i;
+		double d, sinDec, cosDec, lhour;
+		double th, sh, mg, fj, is, ar;
+		double sinFajr, sinIshaa;
+		
+		sinFajr = Math.sin(Utils.DEG_TO_RAD(method.getFajrAng()));
+		sinIshaa = Math.sin(Utils.DEG_TO_RAD(method.getIshaaAng()));
+		
+		for (i = 0; i < count; i++) {
+			d = Utils.DEG_TO_RAD(topDec[3 * i + 1]);
+			sinDec = Math.sin(d);
+			cosDec = Math.cos(d);
+			
+			th = Jitl.getThuhr(degreeLong[i], topRa, 3 * i, sid[1]);
+			
+			lhour = Jitl.getSunHourAngle(sinLat[i], cosLat[i], sinDec, cosDec);
+			if (lhour < 0) {
+				sh = 99;
+				mg = 99;
+			} else {
+				sh = Jitl.getShoMag(sinLat[i], cosLat[i], degreeLong[i],
+						refraction, altitudeRefraction[i], topRa, topDec, 3 * i,
+						sid[1], topDra[i], -lhour);
+				mg = Jitl.getShoMag(sinLat[i], cosLat[i], degreeLong[i],
+						refraction, altitudeRefraction[i], topRa, topDec, 3 * i,
+						sid[1], topDra[i], lhour);
+			}
+			fj = Jitl.getFajIsh(sinLat[i], cosLat[i], sinDec, cosDec, sinFajr);
+			is = Jitl.getFajIsh(sinLat[i], cosLat[i], sinDec, cosDec, sinIshaa);
+			ar = Jitl.getAssr(degreeLat[i], sinLat[i], cosLat[i], d,
+					method.getMathhab());
+			
+			invalid[i] = Jitl.setBaseTimes(times, 6 * i, fj, sh, th, ar, mg,
+					is);
+			Jitl.applyIntervals(method, times, 6 * i);
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package net.sourceforge.jitl;
+
+import java.util.GregorianCalendar;
+
+import net.sourceforge.jitl.astro.Location;
+import net.sourceforge.jitl.astro.SimpleDate;
+
+/**
+ * A thread-safe variant of the Jitl engine. Unlike <code>Jitl</code>, the
+ * location and the method are given on every call instead of being held
+ * by the instance, so a single ConcurrentJitl can be shared by any number
+ * of threads without locking.
+ *
+ * Each thread works on its own Jitl instance (and so on its own astro
+ * cache), which is kept between calls. Consecutive days computed by the
+ * same thread still benefit from the cache.
+ *
+ * The location and method objects are only read during a call. They must
+ * not be modified while a call using them is running.
+ */
+public class ConcurrentJitl {
+
+	private final ThreadLocal<Jitl> workers = new ThreadLocal<Jitl>() {
+		@Override
+		protected Jitl initialValue() {
+			return new Jitl(null, null);
+		}
+	};
+
+	/* Binds the calling thread's engine to the location and method */
+	private Jitl worker(Location loc, Method method) {
+		Jitl itl = workers.get();
+		itl.setLocation(loc);
+		itl.setMethod(method);
+		return itl;
+	}
+
+	/**
+	 * generates prayer times
+	 * @param loc the location
+	 * @param method the method used in the calculation
+	 * @param date the date of prayers
+	 * @return a DayPrayers object containing time of different
+	 * prayers
+	 */
+	public DayPrayers getPrayerTimes(Location loc, Method method,
+			final GregorianCalendar date) {
+		return getPrayerTimes(loc, method, new SimpleDate(date));
+	}
+
+	/**
+	 * Create a DayPrayers instance and fill it with prayer times
+	 * @param loc the location
+	 * @param method the method used in the calculation
+	 * @param date SimpleDate object
+	 * @return a DayPrayers instance containing prayer times
+	 */
+	public DayPrayers getPrayerTimes(Location loc, Method method,
+			final SimpleDate date) {
+		DayPrayers dp = new DayPrayers();
+		getPrayerTimes(loc, method, date, dp);
+
+		return dp;
+	}
+
+	/**
+	 * Generate prayer times from a SimpleDate date
+	 * @param loc the location
+	 * @param method the method used in the calculation
+	 * @param date SimpleDate object
+	 * @param pt instance of a DayPrayers object
+	 */
+	public void getPrayerTimes(Location loc, Method method,
+			final SimpleDate date, DayPrayers pt) {
+		worker(loc, method).getPrayerTimes(date, pt);
+	}
+
+	/**
+	 * Generate prayer times for every day between two dates
+	 * @param loc the location
+	 * @param method the method used in the calculation
+	 * @param from first day of the range
+	 * @param to last day of the range (inclusive)
+	 * @param buffer array receiving the prayer times
+	 * @return the number of days written in <code>buffer</code>
+	 * @see Jitl#getPrayerTimesRange(SimpleDate, SimpleDate, DayPrayers[])
+	 */
+	public int getPrayerTimesRange(Location loc, Method method,
+			final SimpleDate from, final SimpleDate to, DayPrayers[] buffer) {
+		return worker(loc, method).getPrayerTimesRange(from, to, buffer);
+	}
+
+	/**
+	 * Generate imsaak time
+	 * @param loc the location
+	 * @param method the method used in the calculation
+	 * @param date SimpleDate date
+	 * @return imsaak time
+	 */
+	public Prayer getImsaak(Location loc, Method method, SimpleDate date) {
+		return worker(loc, method).getImsaak(date);
+	}
+
+	/**
+	 * Generate next day fajr time
+	 * @param loc the location
+	 * @param method the method used in the calculation
+	 * @param date SimpleDate date
+	 * @return next day fajr time
+	 */
+	public Prayer getNextDayFajr(Location loc, Method method, SimpleDate date) {
+		return worker(loc, method).getNextDayFajr(date);
+	}
+}
@@ -0,0 +1,95 @@
+package net.sourceforge.jitl;
+
+/**
+ * Encapsulates the times of a whole day: imsaak, the prayers with the
+ * shuruq and the fajr of the next day
+ * @see Jitl#getDaySchedule(net.sourceforge.jitl.astro.SimpleDate, DaySchedule)
+ */
+public class DaySchedule {
+	
+	private final Prayer imsaak = new Prayer();
+	
+	private final DayPrayers prayers = new DayPrayers();
+	
+	private final Prayer nextFajr = new Prayer();
+	
+	private final long instants[] = new long[7];
+	
+	private long imsaakInstant;
+	
+	/**
+	 * Imsaak time
+	 * @return imsaak time
+	 */
+	public Prayer imsaak() {
+		return imsaak;
+	}
+	
+	/**
+	 * Prayer times of the day
+	 * @return the prayers and shuruq
+	 */
+	public DayPrayers getDayPrayers() {
+		return prayers;
+	}
+	
+	/**
+	 * Fajr of the next day
+	 * @return next day fajr time
+	 */
+	public Prayer nextFajr() {
+		return nextFajr;
+	}
+	
+	/**
+	 * Get the times as an array
+	 * @return an array of size 7: the six times of getDayPrayers() followed
+	 *         by the next day fajr
+	 */
+	public Prayer[] getPrayers() {
+		Prayer[] day = prayers.getPrayers();
+		
+		return new Prayer[] { day[0], day[1], day[2], day[3], day[4], day[5],
+				nextFajr };
+	}
+	
+	/**
+	 * Instant of a time as UTC epoch seconds
+	 * @param i index of the time in getPrayers()
+	 * @return the instant, Jitl.INVALID_INSTANT if the time cannot be
+	 *         computed at this location
+	 */
+	public long getInstant(int i) {
+		return instants[i];
+	}
+	
+	void setInstant(int i, long instant) {
+		instants[i] = instant;
+	}
+	
+	/**
+	 * Instant of imsaak as UTC epoch seconds
+	 * @return the instant, Jitl.INVALID_INSTANT if imsaak cannot be
+	 *         computed at this location
+	 */
+	public long getImsaakInstant() {
+		return imsaakInstant;
+	}
+	
+	void setImsaakInstant(long instant) {
+		imsaakInstant = instant;
+	}
+	
+	/* Copy a time computed in another Prayer */
+	static void copy(Prayer from, Prayer to) {
+		to.setHour(from.getHour());
+		to.setMinute(from.getMinute());
+		to.setSecond(from.getSecond());
+		to.setExtreme(from.isExtreme());
+	}
+	
+	public String toString() {
+		return imsaak.toString() + "\n" + prayers.toString()
+				+ nextFajr.toString() + "\n";
+	}
+}
@@ -0,0 +1,143 @@
+package net.sourceforge.jitl;
+
+import java.util.TimeZone;
+
+import net.sourceforge.jitl.astro.Location;
+import net.sourceforge.jitl.astro.SimpleDate;
+import net.sourceforge.jitl.astro.SolarEphemeris;
+
+/**
+ * Prayer events of a few consecutive days kept sorted by instant, used to
+ * answer Jitl.nextEvent.
+ *
+ * A query inside the window is a binary search over a few dozen instants
+ * and returns an event of the window, so it does not compute nor allocate
+ * anything. The window is computed again, starting the day before the
+ * queried instant, when the instant is outside of it or when the location,
+ * the method, the ephemeris or the time zone changed.
+ */
+class EventWindow {
+	
+	/* Days computed at once, from the day before the queried instant */
+	static final int DAYS = 7;
+	
+	private final long instants[] = new long[DAYS * 6];
+	
+	private final PrayerEvent events[] = new PrayerEvent[DAYS * 6];
+	
+	private int count;
+	
+	/* Settings the window was computed with */
+	private Location loc;
+	
+	private Method method;
+	
+	private SolarEphemeris ephemeris;
+	
+	private TimeZone zone;
+	
+	private final DayPrayers prayers = new DayPrayers();
+	
+	private final long dayInstants[] = new long[6];
+	
+	private final SimpleDate date = new SimpleDate(1, 1, 1970);
+	
+	/**
+	 * @return the first event of the window after instant, computing the
+	 * window again if needed, or null if no time of the window can be
+	 * computed
+	 */
+	PrayerEvent next(Jitl jitl, Location loc, Method method,
+			SolarEphemeris ephemeris, TimeZone zone, long instant) {
+		int i;
+		
+		if (count == 0 || instant < instants[0]
+				|| instant >= instants[count - 1]
+				|| !matches(loc, method, ephemeris, zone)) {
+			fill(jitl, loc, method, ephemeris, zone, instant);
+		}
+		
+		i = search(instant);
+		return i < count ? events[i] : null;
+	}
+	
+	/* Index of the first instant after instant, count if there is none */
+	private int search(long instant) {
+		int low = 0, high = count, mid;
+		
+		while (low < high) {
+			mid = (low + high) >>> 1;
+			if (instants[mid] <= instant) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+	
+	private void fill(Jitl jitl, Location loc, Method method,
+			SolarEphemeris ephemeris, TimeZone zone, long instant) {
+		int d, k, i;
+		long day, offset, t;
+		PrayerEvent e;
+		Prayer[] p = prayers.getPrayers();
+		
+		if (zone != null) {
+			offset = zone.getOffset(instant * 1000) / 1000;
+		} else {
+			offset = Math.round((loc.getGmtDiff() + loc.getDst()) * 3600);
+		}
+		day = Math.floorDiv(instant + offset, 86400) - 1;
+		
+		count = 0;
+		Jitl.setEpochDay(date, day);
+		for (d = 0; d < DAYS; d++, day++) {
+			jitl.getPrayerInstants(date, day, zone, prayers, dayInstants, 0);
+			for (k = 0; k < 6; k++) {
+				t = dayInstants[k];
+				if (t == Jitl.INVALID_INSTANT) {
+					continue;
+				}
+				e = new PrayerEvent(day, Jitl.TIME_ARRAY[k], t,
+						p[k].isExtreme());
+				
+				/* insert in order, times are already sorted unless an
+				 * offset or an extreme method moved one past another */
+				for (i = count; i > 0 && instants[i - 1] > t; i--) {
+					instants[i] = instants[i - 1];
+					events[i] = events[i - 1];
+				}
+				instants[i] = t;
+				events[i] = e;
+				count++;
+			}
+			Jitl.nextDay(date);
+		}
+		
+		this.loc = loc.copy();
+		this.method = method.copy();
+		this.ephemeris = ephemeris;
+		this.zone = (zone == null) ? null : (TimeZone) zone.clone();
+	}
+	
+	private boolean matches(Location loc, Method method,
+			SolarEphemeris ephemeris, TimeZone zone) {
+		if (this.ephemeris != ephemeris || !MethodKey.same(this.method, method)) {
+			return false;
+		}
+		if (this.loc.getDegreeLat() != loc.getDegreeLat()
+				|| this.loc.getDegreeLong() != loc.getDegreeLong()
+				|| this.loc.getSeaLevel() != loc.getSeaLevel()
+				|| this.loc.getPressure() != loc.getPressure()
+				|| this.loc.getTemperature() != loc.getTemperature()) {
+			return false;
+		}
+		if (zone == null) {
+			return this.zone == null && this.loc.getGmtDiff() == loc.getGmtDiff()
+					&& this.loc.getDst() == loc.getDst();
+		}
+		return this.zone != null && this.zone.getID().equals(zone.getID())
+				&& this.zone.hasSameRules(zone);
+	}
+}
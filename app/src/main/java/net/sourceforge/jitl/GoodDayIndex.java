@@ -0,0 +1,182 @@
+package net.sourceforge.jitl;
+
+import net.sourceforge.jitl.astro.Astro;
+import net.sourceforge.jitl.astro.AstroDay;
+import net.sourceforge.jitl.astro.AstroLib;
+import net.sourceforge.jitl.astro.LocationContext;
+import net.sourceforge.jitl.astro.SolarEphemeris;
+import net.sourceforge.jitl.astro.Utils;
+
+/**
+ * Index of the days having a valid fajr and a valid ishaa, used by the
+ * nearest good day methods (GOOD_*).
+ *
+ * The flags of a day are computed with the same formulae as
+ * getPrayerTimesByDay, so the nearest good day found through the index is
+ * the one the day by day search would find. Days are computed lazily by
+ * blocks of consecutive days, each costing a single ephemeris evaluation,
+ * and are kept until the location, the angles, the ephemeris or the GMT
+ * difference (the fraction of the julian days) changes. Computing a year
+ * of prayer times thus evaluates each day once instead of searching
+ * around every invalid day.
+ */
+class GoodDayIndex {
+
+	/* Day flags */
+	static final byte KNOWN = 1, FAJR = 2, ISHAA = 4;
+
+	/* Days computed together when an unknown day is read */
+	private static final int BLOCK = 32;
+
+	/* Days covered when the index is created, about a year on both sides */
+	private static final int INITIAL_DAYS = 24 * BLOCK;
+
+	private byte flags[] = new byte[0];
+
+	/* julian day of flags[0] */
+	private double baseJd;
+
+	private double degreeLat, degreeLong, seaLevel;
+
+	private double fajrAng, ishaaAng;
+
+	private SolarEphemeris ephemeris;
+
+	private double lastFajrDay;
+
+	private final Astro cache = new Astro();
+
+	private final Astro top = new Astro();
+
+	private final AstroDay astroDay = new AstroDay();
+
+	/**
+	 * Bind the index to a location, method and ephemeris, dropping the
+	 * computed days if one of them changed
+	 */
+	void update(LocationContext ctx, Method method, SolarEphemeris ephemeris) {
+		if (flags.length > 0 && degreeLat == ctx.getDegreeLat()
+				&& degreeLong == ctx.getDegreeLong()
+				&& seaLevel == ctx.getSeaLevel()
+				&& fajrAng == method.getFajrAng()
+				&& ishaaAng == method.getIshaaAng()
+				&& this.ephemeris == ephemeris) {
+			return;
+		}
+		degreeLat = ctx.getDegreeLat();
+		degreeLong = ctx.getDegreeLong();
+		seaLevel = ctx.getSeaLevel();
+		fajrAng = method.getFajrAng();
+		ishaaAng = method.getIshaaAng();
+		this.ephemeris = ephemeris;
+		flags = new byte[0];
+	}
+
+	/**
+	 * @return true if the index was built with the angles of this method
+	 */
+	boolean hasAngles(Method method) {
+		return flags.length > 0 && fajrAng == method.getFajrAng()
+				&& ishaaAng == method.getIshaaAng();
+	}
+
+	/**
+	 * Search the nearest good day, trying for each distance the last day
+	 * before the next one
+	 * @param julianDay the julian day
+	 * @param lastDay maximum distance searched
+	 * @param ctx terms of the location, as given to update
+	 * @return the julian day of the good day, or 0 if there is none
+	 */
+	double search(double julianDay, int lastDay, LocationContext ctx) {
+		int i, k;
+
+		/* make room for the whole search before reading the position */
+		index(julianDay - lastDay);
+		index(julianDay + lastDay);
+		k = index(julianDay);
+		lastFajrDay = 0;
+
+		for (i = 0; i <= lastDay; i++) {
+			if (isGood(k - i, ctx)) {
+				return julianDay - i;
+			}
+			if ((flags[k - i] & FAJR) != 0)
+				lastFajrDay = julianDay - i;
+
+			if (isGood(k + i, ctx)) {
+				return julianDay + i;
+			}
+			if ((flags[k + i] & FAJR) != 0)
+				lastFajrDay = julianDay + i;
+		}
+		return 0;
+	}
+
+	/**
+	 * @return the last day having a valid fajr met by the last search, or 0
+	 */
+	double getLastFajrDay() {
+		return lastFajrDay;
+	}
+
+	private boolean isGood(int k, LocationContext ctx) {
+		if (flags[k] == 0) {
+			fill(k - k % BLOCK, ctx);
+		}
+		return (flags[k] & (FAJR | ISHAA)) == (FAJR | ISHAA);
+	}
+
+	/* Position of a day in flags, growing or resetting the index when
+	 * needed */
+	private int index(double julianDay) {
+		double k;
+		int start, end, length;
+		byte grown[];
+
+		k = julianDay - baseJd;
+		if (flags.length == 0 || k != Math.floor(k) || baseJd + k != julianDay
+				|| k < -INITIAL_DAYS || k >= flags.length + INITIAL_DAYS) {
+			/* new index, days of another GMT difference or far from the
+			 * indexed ones */
+			baseJd = julianDay - INITIAL_DAYS / 2;
+			flags = new byte[INITIAL_DAYS];
+			return INITIAL_DAYS / 2;
+		}
+		if (k >= 0 && k < flags.length) {
+			return (int) k;
+		}
+
+		/* grow by a multiple of the block so that blocks stay aligned */
+		start = Math.min(0, (int) Math.floor(k / BLOCK) * BLOCK);
+		end = Math.max(flags.length, ((int) k / BLOCK + 1) * BLOCK);
+		length = Math.max(end - start, 2 * flags.length);
+		if (start < 0) {
+			start = end - length;
+		}
+		grown = new byte[length];
+		System.arraycopy(flags, 0, grown, -start, flags.length);
+		flags = grown;
+		baseJd += start;
+		return (int) k - start;
+	}
+
+	/* Compute the flags of the block starting at flags[first] */
+	private void fill(int first, LocationContext ctx) {
+		int k;
+		double dec;
+		byte f;
+
+		for (k = first; k < first + BLOCK; k++) {
+			AstroLib.getAstroValuesByDay(baseJd + k, ctx, cache, top,
+					astroDay, ephemeris);
+			dec = Utils.DEG_TO_RAD(top.getDec()[1]);
+			f = KNOWN;
+			if (Jitl.getFajIsh(ctx, dec, fajrAng) != 99)
+				f |= FAJR;
+			if (Jitl.getFajIsh(ctx, dec, ishaaAng) != 99)
+				f |= ISHAA;
+			flags[k] = f;
+		}
+	}
+}
@@ -1,12 +1,19 @@
 package net.sourceforge.jitl;
 
 import java.util.GregorianCalendar;
+import java.util.TimeZone;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import net.sourceforge.jitl.astro.Astro;
+import net.sourceforge.jitl.astro.AstroDay;
 import net.sourceforge.jitl.astro.AstroLib;
 import net.sourceforge.jitl.astro.SimpleDate;
+import net.sourceforge.jitl.astro.SolarEphemeris;
 import net.sourceforge.jitl.astro.Dms;
 import net.sourceforge.jitl.astro.Location;
+import net.sourceforge.jitl.astro.LocationContext;
 import net.sourceforge.jitl.astro.Utils;
 
 /**
@@ -17,6 +24,18 @@ import net.sourceforge.jitl.astro.Utils;
  */
 public class Jitl {
 	
+	/**
+	 * instant of a prayer which cannot be computed at the location (no
+	 * extreme latitude method set)
+	 */
+	public static final long INVALID_INSTANT = Long.MIN_VALUE;
+	
+	/**
+	 * mean radius of the earth in kilometers, used for the distances to the
+	 * Kaaba
+	 */
+	public static final double EARTH_RADIUS = 6371.0088;
+	
 	/**
 	 * minor version of jitl
 	 */
@@ -32,10 +51,81 @@ public class Jitl {
 	 * multiple getPrayerTimes calls*/
 	private Astro astroCache = new Astro();
 	
+	/* Scratch state reused by every getPrayerTimes call so that computing
+	 * a day does not allocate */
+	private final Astro tAstro = new Astro();
+	
+	private final AstroDay astroDay = new AstroDay();
+	
+	private final DayCouple dayCouple = new DayCouple(0, 0);
+	
+	private final double tempPrayer[] = new double[6];
+	
+	/* Location terms, and the same terms at the latitude of the nearest
+	 * latitude methods */
+	private final LocationContext context = new LocationContext();
+	
+	private final LocationContext nearestContext = new LocationContext();
+	
+	/* Valid days of the nearest good day methods (imsaak uses other
+	 * angles, it has its own index), and the cache of the good days found
+	 * with them */
+	private final GoodDayIndex goodDays = new GoodDayIndex();
+	
+	private final GoodDayIndex imsaakGoodDays = new GoodDayIndex();
+	
+	private Astro goodDayCache = new Astro();
+	
+	private final Astro goodAstro = new Astro();
+	
+	/* Method independent values of the day loaded by loadDay */
+	private double dayDec, dayTh, daySh, dayMg;
+	
+	private final DayPrayers scratchPrayers = new DayPrayers();
+	
+	/* Days added or removed by base6hm when bringing each time into the
+	 * 0-24 range, used to compute the instants */
+	private final int dayShift[] = new int[6];
+	
+	/* Copy of the location bound to the offset of a time zone on the
+	 * computed day */
+	private final Location zoneLoc = new Location(0, 0, 0, 0);
+	
+	/* Events kept for nextEvent */
+	private final EventWindow eventWindow = new EventWindow();
+	
+	/* Sun altitude times of the last day loaded */
+	private final AltitudeSolver altitudeSolver = new AltitudeSolver();
+	
+	/* Times of a day, in the order of DayPrayers */
+	static final PrayerTime[] TIME_ARRAY = { PrayerTime.FAJR,
+			PrayerTime.SHUROOQ, PrayerTime.THUHR, PrayerTime.ASSR,
+			PrayerTime.MAGHRIB, PrayerTime.ISHAA };
+	
+	/* Bits of the prayers of TIME_ARRAY in the masks of getDependencies */
+	private static final int FAJR_BIT = 1, SHUROOQ_BIT = 2, THUHR_BIT = 4,
+			ASSR_BIT = 8, MAGHRIB_BIT = 16, ISHAA_BIT = 32, ALL_PRAYERS = 63;
+	
+	/* Kaaba terms of the qibla formulae */
+	private static final double KAABA_LAT_RAD = Utils.DEG_TO_RAD(Utils.KAABA_LAT);
+	
+	private static final double KAABA_LONG_RAD = Utils
+			.DEG_TO_RAD(Utils.KAABA_LONG);
+	
+	private static final double KAABA_TAN_LAT = Math.tan(KAABA_LAT_RAD);
+	
+	private static final double KAABA_COS_LAT = Math.cos(KAABA_LAT_RAD);
+	
+	private static final char DAY_LIST[][] = {
+			{ 0, 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 },
+			{ 0, 31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 } };
+	
 	
 	private Location loc;
 	
 	private Method method;
+	
+	private SolarEphemeris ephemeris = AstroLib.VSOP87;
 
 	
 	/**
@@ -65,6 +155,26 @@ public class Jitl {
 	public void setMethod(Method method) {
 		this.method = method;
 	}
+	
+	/**
+	 * changes the source of the solar values
+	 * @param ephemeris the new ephemeris, <code>AstroLib.VSOP87</code> by
+	 *  default. <code>LowPrecisionEphemeris</code> is much faster for times
+	 *  shown to the minute
+	 */
+	public void setEphemeris(SolarEphemeris ephemeris) {
+		this.ephemeris = ephemeris;
+		/* the cached days were computed by the previous ephemeris */
+		astroCache = new Astro();
+		goodDayCache = new Astro();
+	}
+	
+	/**
+	 * @return the source of the solar values
+	 */
+	public SolarEphemeris getEphemeris() {
+		return ephemeris;
+	}
 		
 	/**
 	 * generates prayer times
@@ -98,78 +208,639 @@ public class Jitl {
 	}
 	
 	/**
-	 * Generate prayer times from a SimpleDate date
+	 * Generate prayer times from a SimpleDate date. This does not allocate
+	 * any object: the scratch state of this instance is reused and the
+	 * results are written in <code>pt</code>.
 	 * @param date SimpleDate object
 	 * @param pt instance of a DayPrayers object
 	 */
 	public void getPrayerTimes(final SimpleDate date, DayPrayers pt) {
+		getDayInfo(date, loc.getGmtDiff(), dayCouple);
+		getPrayerTimesByDay(dayCouple, pt, PrayerTime.FAJR);
+	}
+
+	/**
+	 * Generate only some prayer times of a day. The formulae of the times
+	 * which are not requested are skipped, except the ones a requested time
+	 * depends on: fajr, assr and ishaa are computed from thuhr, and fajr and
+	 * ishaa also need shurooq and maghrib when they come from an interval or
+	 * from the SEVEN_*, HALF_* and MIN_* extreme latitude methods. The
+	 * requested times are the same as the ones of getPrayerTimes, the other
+	 * prayers of <code>pt</code> are left undefined.
+	 * @param date SimpleDate object
+	 * @param times the requested prayers, IMSAAK and NEXTFAJR are not
+	 * prayers of DayPrayers and are ignored
+	 * @param pt instance of a DayPrayers object
+	 */
+	public void getPrayerTimes(final SimpleDate date, PrayerTime[] times,
+			DayPrayers pt) {
+		int i, k, prayers, needed;
+		
+		prayers = 0;
+		for (i = 0; i < times.length; i++) {
+			for (k = 0; k < 6; k++) {
+				if (times[i] == TIME_ARRAY[k])
+					prayers |= 1 << k;
+			}
+		}
+		needed = getDependencies(method, prayers);
+		
+		getDayInfo(date, loc.getGmtDiff(), dayCouple);
+		loadDay(dayCouple, needed);
+		computeDay(method, dayCouple, pt, PrayerTime.FAJR, needed);
+	}
+	
+	/**
+	 * Generate the times at which the centre of the sun reaches some
+	 * altitudes, for the events the methods do not define: duha, imsaak at
+	 * another angle, civil (-6) or nautical (-12) twilight... The
+	 * astronomical values of the day are computed once for all the
+	 * altitudes, each altitude then costing a few trigonometric calls.
+	 * @param date SimpleDate object
+	 * @param altitudes geometric altitudes of the centre of the sun in
+	 * degrees, negative below the horizon
+	 * @param setting for each altitude, true for the time after thuhr and
+	 * false for the time before
+	 * @param count number of altitudes
+	 * @param hours receives the times in hours since midnight with the
+	 * daylight saving time of the location, below 0 or above 24 when the
+	 * time falls on the previous or next day, or 99 if the sun does not
+	 * reach the altitude on this day
+	 */
+	public void getAltitudeTimes(final SimpleDate date, double[] altitudes,
+			boolean[] setting, int count, double[] hours) {
+		int i;
+		
+		getDayInfo(date, loc.getGmtDiff(), dayCouple);
+		loadDay(dayCouple, 0);
+		altitudeSolver.update(context, tAstro);
+		for (i = 0; i < count; i++) {
+			hours[i] = altitudeSolver.getTime(altitudes[i], setting[i], 0);
+			if (hours[i] != 99)
+				hours[i] += loc.getDst();
+		}
+	}
+	
+	/**
+	 * Generate the middle and the start of the last third of the night
+	 * following a day, the night going from sunset to the next sunrise (the
+	 * centre of the sun at Utils.CENTER_OF_SUN_ANGLE). The next sunrise is
+	 * taken from the astronomical values of the day, so this costs about
+	 * the same as two altitudes of getAltitudeTimes.
+	 * @param date SimpleDate object
+	 * @param hours receives the middle of the night at index 0 and the
+	 * start of its last third at index 1, in hours since the midnight
+	 * starting the day (above 24 after the next midnight) with the daylight
+	 * saving time of the location, or 99 if the sun does not set or rise
+	 */
+	public void getNightTimes(final SimpleDate date, double[] hours) {
+		double sunset, sunrise;
+		
+		getDayInfo(date, loc.getGmtDiff(), dayCouple);
+		loadDay(dayCouple, 0);
+		altitudeSolver.update(context, tAstro);
+		sunset = altitudeSolver.getTime(Utils.CENTER_OF_SUN_ANGLE, true, 0);
+		sunrise = altitudeSolver.getTime(Utils.CENTER_OF_SUN_ANGLE, false, 1);
+		if (sunset == 99 || sunrise == 99) {
+			hours[0] = 99;
+			hours[1] = 99;
+		} else {
+			hours[0] = sunset + (sunrise - sunset) / 2 + loc.getDst();
+			hours[1] = sunset + (sunrise - sunset) * 2 / 3 + loc.getDst();
+		}
+	}
+
+	/**
+	 * Create a DaySchedule instance and fill it with imsaak, the prayer
+	 * times and the next day fajr
+	 * @param date the date of prayers
+	 * @return a DaySchedule instance
+	 * @see #getDaySchedule(SimpleDate, DaySchedule)
+	 */
+	public DaySchedule getDaySchedule(final GregorianCalendar date) {
+		DaySchedule schedule = new DaySchedule();
+		getDaySchedule(new SimpleDate(date), schedule);
+		
+		return schedule;
+	}
+	
+	/**
+	 * Create a DaySchedule instance and fill it with imsaak, the prayer
+	 * times and the next day fajr
+	 * @param date the date of prayers
+	 * @return a DaySchedule instance
+	 * @see #getDaySchedule(SimpleDate, DaySchedule)
+	 */
+	public DaySchedule getDaySchedule(final SimpleDate date) {
+		DaySchedule schedule = new DaySchedule();
+		getDaySchedule(date, schedule);
+		
+		return schedule;
+	}
+	
+	/**
+	 * Generate imsaak, the prayer times and the next day fajr in one pass.
+	 * The astronomical values and the method independent formulae of the
+	 * day are computed once and shared by imsaak and the prayer times, the
+	 * next day only adds one day to the astro window. The results are the
+	 * same as getImsaak, getPrayerTimes and getNextDayFajr. The instants of
+	 * the schedule are computed with the GMT difference and daylight saving
+	 * time of the location.
+	 * @param date the date of prayers
+	 * @param schedule instance receiving the times
+	 */
+	public void getDaySchedule(final SimpleDate date, DaySchedule schedule) {
+		int i;
+		long day, offset;
 		DayCouple dc;
+		Prayer[] prayers = schedule.getDayPrayers().getPrayers();
 		
-		dc = getDayInfo(date, loc.getGmtDiff());
-		getPrayerTimesByDay(dc, pt, PrayerTime.FAJR);
+		day = getEpochDay(date);
+		offset = Math.round((loc.getGmtDiff() + loc.getDst()) * 3600);
+		
+		dc = getDayInfo(date, loc.getGmtDiff(), dayCouple);
+		loadDay(dc);
+		computeDay(method, dc, schedule.getDayPrayers(), PrayerTime.FAJR);
+		for (i = 0; i < 6; i++) {
+			schedule.setInstant(i, getInstant(day, offset, prayers[i],
+					dayShift[i]));
+		}
+		
+		computeImsaak(dc, scratchPrayers);
+		DaySchedule.copy(scratchPrayers.fajr(), schedule.imsaak());
+		schedule.setImsaakInstant(getInstant(day, offset, schedule.imsaak(),
+				dayShift[0]));
+		
+		dc.setJulianDay(dc.getJulianDay() + 1);
+		loadDay(dc);
+		computeDay(method, dc, scratchPrayers, PrayerTime.NEXTFAJR);
+		DaySchedule.copy(scratchPrayers.fajr(), schedule.nextFajr());
+		schedule.setInstant(6, getInstant(day + 1, offset, schedule.nextFajr(),
+				dayShift[0]));
 	}
 	
-	void getPrayerTimesByDay(DayCouple dc, DayPrayers pt, PrayerTime type) {
-		getPrayerTimesByDay(method, dc, pt, type);
+	/**
+	 * Same as getDaySchedule(SimpleDate, DaySchedule), the GMT difference
+	 * of the location being replaced by the offset of a time zone on that
+	 * day (daylight saving time included). The times are those of the
+	 * zone, and the instants of the schedule are filled with UTC epoch
+	 * seconds, so they stay right on the days where the offset changes.
+	 * @param date the date of prayers
+	 * @param zone the time zone of the date and of the times
+	 * @param schedule instance receiving the times and instants
+	 */
+	public void getDaySchedule(final SimpleDate date, TimeZone zone,
+			DaySchedule schedule) {
+		Location saved = loc;
+		
+		/* The location is restored even if the computation fails, so that
+		 * the engine is never left bound to the scratch zone location */
+		try {
+			loc = bindZone(zone, getEpochDay(date));
+			getDaySchedule(date, schedule);
+		} finally {
+			loc = saved;
+		}
 	}
 	
-	void getPrayerTimesByDay(Method method, DayCouple dc, DayPrayers pt,
-			PrayerTime type) {
-		int i, invalid;
-		double th, sh, mg, fj, is, ar;
-		double lat, lon, dec;
-		double tempPrayer[] = new double[6];
-		Astro tAstro = new Astro();
+	/**
+	 * Generate the instants of the prayers of every day between two dates
+	 * in a time zone. Each day uses the offset of the zone on that day.
+	 * @param from first day of the range
+	 * @param to last day of the range (inclusive)
+	 * @param zone the time zone of the dates
+	 * @param buffer array receiving 6 UTC epoch seconds per day (fajr,
+	 * shuruq, thuhr, assr, maghrib and ishaa), INVALID_INSTANT for the times
+	 * which cannot be computed
+	 * @return the number of days written in <code>buffer</code>, which is
+	 * limited by the buffer length
+	 */
+	public int getPrayerInstantsRange(final SimpleDate from,
+			final SimpleDate to, TimeZone zone, long[] buffer) {
+		int i, count;
+		long day;
+		SimpleDate date = from.copy();
+		
+		count = Math.min(getDayCount(from, to), buffer.length / 6);
+		day = getEpochDay(from);
+		
+		for (i = 0; i < count; i++, day++) {
+			getPrayerInstants(date, day, zone, scratchPrayers, buffer, i * 6);
+			nextDay(date);
+		}
 		
-		lat = loc.getDegreeLat();
-		lon = loc.getDegreeLong();
-		invalid = 0;
+		return count;
+	}
+	
+	/**
+	 * Stream of the prayer events (fajr, shuruq, thuhr, assr, maghrib and
+	 * ishaa of each day) of a range of days. The days are computed lazily
+	 * when the stream is consumed. The stream can be made parallel: it is
+	 * split by blocks of days, each block being computed by its own engine.
+	 * The location and method are copied, later changes of this instance
+	 * do not affect the stream.
+	 * @param from first day of the range
+	 * @param to last day of the range (inclusive), or null for an unbounded
+	 * range
+	 * @param zone time zone giving the offset of each day, or null to use
+	 * the GMT difference and daylight saving time of the location
+	 * @return the events ordered by day then prayer. Times which cannot be
+	 * computed have Jitl.INVALID_INSTANT as instant
+	 */
+	public Stream<PrayerEvent> getPrayerEvents(final SimpleDate from,
+			final SimpleDate to, TimeZone zone) {
+		long first, end;
 		
-		/* Start by filling the tAstro structure with the appropriate astronomical
-		 * values for this day. We also pass the cache structure to update and check
-		 * if the actual values are already available. */
-		AstroLib
-		.getAstroValuesByDay(dc.getJulianDay(), loc, astroCache, tAstro);
-		dec = Utils.DEG_TO_RAD(tAstro.getDec()[1]);
+		first = getEpochDay(from);
+		end = (to == null) ? Long.MAX_VALUE : Math.max(first,
+				getEpochDay(to) + 1);
 		
-		/* Get Prayer Times formulae results for this day of year and this
-		 * location. The results are NOT the actual prayer times */
-		fj = getFajIsh(lat, dec, method.getFajrAng());
-		sh = getShoMag(loc, tAstro, PrayerTime.SHUROOQ);
-		th = getThuhr(lon, tAstro);
-		ar = getAssr(lat, dec, method.getMathhab());
-		mg = getShoMag(loc, tAstro, PrayerTime.MAGHRIB);
-		is = getFajIsh(lat, dec, method.getIshaaAng());
+		return StreamSupport.stream(new PrayerEventSpliterator(loc.copy(),
+				method.copy(), ephemeris, zone, first, end), false);
+	}
+	
+	/**
+	 * Next prayer event after an instant. The events of a few days around
+	 * the instant are computed and kept, so that following queries are
+	 * answered by a binary search without computing anything until the
+	 * instant leaves the kept days, or the location, method, ephemeris or
+	 * zone changes.
+	 * @param instant UTC epoch seconds
+	 * @param zone time zone giving the offset of each day, or null to use
+	 * the GMT difference and daylight saving time of the location
+	 * @return the first event whose instant is after <code>instant</code>
+	 * (shuruq included), or null if no time can be computed in the days
+	 * following it
+	 */
+	public PrayerEvent nextEvent(long instant, TimeZone zone) {
+		return eventWindow.next(this, loc, method, ephemeris, zone, instant);
+	}
+	
+	/* Prayer times of a day in pt and their instants in instants[pos] to
+	 * instants[pos + 5]. day is the epoch day of date, and a null zone
+	 * uses the GMT difference and daylight saving time of the location */
+	void getPrayerInstants(SimpleDate date, long day, TimeZone zone,
+			DayPrayers pt, long[] instants, int pos) {
+		int k;
+		long offset;
+		Location saved = loc;
+		Prayer[] prayers = pt.getPrayers();
+		
+		try {
+			if (zone != null) {
+				loc = bindZone(zone, day);
+			}
+			offset = Math.round((loc.getGmtDiff() + loc.getDst()) * 3600);
+			
+			getDayInfo(date, loc.getGmtDiff(), dayCouple);
+			loadDay(dayCouple);
+			computeDay(method, dayCouple, pt, PrayerTime.FAJR);
+			for (k = 0; k < 6; k++) {
+				instants[pos + k] = getInstant(day, offset, prayers[k],
+						dayShift[k]);
+			}
+		} finally {
+			loc = saved;
+		}
+	}
+	
+	/* Copy the location with the offset of the zone at noon of a day, and
+	 * no daylight saving time since the offset already includes it */
+	private Location bindZone(TimeZone zone, long day) {
+		long noon = (day * 86400 + 43200) * 1000 - zone.getRawOffset();
+		
+		zoneLoc.setDegreeLat(loc.getDegreeLat());
+		zoneLoc.setDegreeLong(loc.getDegreeLong());
+		zoneLoc.setSeaLevel(loc.getSeaLevel());
+		zoneLoc.setPressure(loc.getPressure());
+		zoneLoc.setTemperature(loc.getTemperature());
+		zoneLoc.setGmtDiff(zone.getOffset(noon) / 3600000.0);
+		zoneLoc.setDst(0);
+		return zoneLoc;
+	}
+	
+	/* UTC epoch seconds of a time of the day, offset being the GMT
+	 * difference of the time in seconds */
+	private static long getInstant(long day, long offset, Prayer pt, int shift) {
+		if (pt.getHour() == 99) {
+			return INVALID_INSTANT;
+		}
+		return (day + shift) * 86400 + pt.getHour() * 3600 + pt.getMinute() * 60
+				+ pt.getSecond() - offset;
+	}
+	
+	/* Days since 1970-01-01 */
+	static long getEpochDay(SimpleDate date) {
+		return (long) (AstroLib.getJulianDay(date, 0) - 2440587.5);
+	}
+	
+	/* Set the date of a number of days since 1970-01-01 (proleptic
+	 * gregorian calendar) */
+	static void setEpochDay(SimpleDate date, long epochDay) {
+		long z, era, doe, yoe, doy, mp;
+		
+		z = epochDay + 719468;
+		era = (z >= 0 ? z : z - 146096) / 146097;
+		doe = z - era * 146097;
+		yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		mp = (5 * doy + 2) / 153;
+		
+		date.setDay((int) (doy - (153 * mp + 2) / 5 + 1));
+		date.setMonth((int) (mp < 10 ? mp + 3 : mp - 9));
+		date.setYear((int) (yoe + era * 400 + (mp < 10 ? 0 : 1)));
+	}
+	
+	/* Move a date to the next day (proleptic gregorian calendar, as
+	 * setEpochDay) */
+	static void nextDay(SimpleDate date) {
+		int year = date.getYear();
+		int isLeap = (((year & 3) == 0) && ((year % 100) != 0 || (year % 400) == 0)) ? 1
+				: 0;
 		
-		/* Calculate all prayer times as Base-10 numbers in Normal circumstances */
-		/* Fajr */
-		if (fj == 99) {
-			tempPrayer[0] = 99;
-			invalid = 1;
+		if (date.getDay() < DAY_LIST[isLeap][date.getMonth()]) {
+			date.setDay(date.getDay() + 1);
+		} else if (date.getMonth() < 12) {
+			date.setDay(1);
+			date.setMonth(date.getMonth() + 1);
 		} else {
-			tempPrayer[0] = th - fj;
+			date.setDay(1);
+			date.setMonth(1);
+			date.setYear(year + 1);
+		}
+	}
+	
+	/* Move a date and its day couple to the next day. The julian day is
+	 * simply incremented so that the astro cache sees consecutive days */
+	static void nextDay(SimpleDate date, DayCouple dc) {
+		nextDay(date);
+		dc.setJulianDay(dc.getJulianDay() + 1);
+		if (date.getDay() == 1 && date.getMonth() == 1) {
+			dc.setLastDay(getDayofYear(date.getYear(), 12, 31));
 		}
+	}
+	
+	/**
+	 * Create a DayPrayers array and fill it with the prayer times of every
+	 * day between two dates
+	 * @param from first day of the range
+	 * @param to last day of the range (inclusive)
+	 * @return an array containing one DayPrayers instance per day, empty
+	 * if <code>to</code> is before <code>from</code>
+	 * @see #getPrayerTimesRange(SimpleDate, SimpleDate, DayPrayers[])
+	 */
+	public DayPrayers[] getPrayerTimesRange(final SimpleDate from,
+			final SimpleDate to) {
+		DayPrayers[] buffer = new DayPrayers[getDayCount(from, to)];
+		getPrayerTimesRange(from, to, buffer);
+
+		return buffer;
+	}
+
+	/**
+	 * Generate prayer times for every day between two dates. Days are
+	 * computed in order so each new day only needs one more day of
+	 * astronomical values, the two others being shifted from the cache.
+	 * @param from first day of the range
+	 * @param to last day of the range (inclusive)
+	 * @param buffer array receiving the prayer times, index 0 being
+	 * <code>from</code>. Existing DayPrayers instances are reused and
+	 * <code>null</code> entries are filled with new ones
+	 * @return the number of days written in <code>buffer</code>, which is
+	 * limited by the buffer length
+	 */
+	public int getPrayerTimesRange(final SimpleDate from, final SimpleDate to,
+			DayPrayers[] buffer) {
+		int i, count;
+		DayCouple dc;
+		SimpleDate date = from.copy();
+
+		count = Math.min(getDayCount(from, to), buffer.length);
+		dc = getDayInfo(from, loc.getGmtDiff());
+
+		for (i = 0; i < count; i++) {
+			if (buffer[i] == null)
+				buffer[i] = new DayPrayers();
+			getPrayerTimesByDay(dc, buffer[i], PrayerTime.FAJR);
+			nextDay(date, dc);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Create a Timetable and fill it with the prayer times of every day
+	 * between two dates
+	 * @param from first day of the range
+	 * @param to last day of the range (inclusive)
+	 * @return the timetable, empty if <code>to</code> is before
+	 * <code>from</code>
+	 * @see #getTimetable(Timetable)
+	 */
+	public Timetable getTimetable(final SimpleDate from, final SimpleDate to) {
+		Timetable table = new Timetable(from, getDayCount(from, to));
+		getTimetable(table);
 		
-		if (sh == 99) {
-			invalid = 1;
+		return table;
+	}
+	
+	/**
+	 * Same as getTimetable(SimpleDate, SimpleDate) but computed on a
+	 * fork/join pool. The range is cut into months, each month being
+	 * computed by its own engine with its own astro window and written
+	 * straight into its days of the timetable. The results are the same as
+	 * the sequential computation.
+	 * @param from first day of the range
+	 * @param to last day of the range (inclusive)
+	 * @param pool the pool running the computation, for example
+	 * <code>ForkJoinPool.commonPool()</code>
+	 * @return the timetable, empty if <code>to</code> is before
+	 * <code>from</code>
+	 */
+	public Timetable getTimetable(final SimpleDate from, final SimpleDate to,
+			ForkJoinPool pool) {
+		long bounds[];
+		Timetable table = new Timetable(from, getDayCount(from, to));
+		
+		if (table.getDays() == 0) {
+			return table;
 		}
+		bounds = TimetableTask.getMonthBounds(from, to);
 		
-		tempPrayer[1] = sh;
-		tempPrayer[2] = th;
-		tempPrayer[3] = th + ar;
-		tempPrayer[4] = mg;
+		pool.invoke(new TimetableTask(loc.copy(), method.copy(), ephemeris,
+				table, bounds, 0, bounds.length - 1));
+		return table;
+	}
+	
+	/**
+	 * Fill a timetable with the prayer times of its days, starting from its
+	 * start date. Days are computed in order as in getPrayerTimesRange and
+	 * written straight into the timetable arrays.
+	 * @param table the timetable to fill
+	 */
+	public void getTimetable(Timetable table) {
+		getTimetableDays(table, 0, table.getDays());
+	}
+	
+	/* Fill days first to first + count (exclusive) of a timetable */
+	void getTimetableDays(Timetable table, int first, int count) {
+		int i, k;
+		DayCouple dc;
+		SimpleDate date = table.getStart();
+		Prayer[] prayers = scratchPrayers.getPrayers();
 		
-		if (mg == 99) {
-			invalid = 1;
+		if (first != 0) {
+			setEpochDay(date, getEpochDay(date) + first);
 		}
+		dc = getDayInfo(date, loc.getGmtDiff(), dayCouple);
 		
-		/* Ishaa */
-		if (is == 99) {
-			tempPrayer[5] = 99;
-			invalid = 1;
-		} else {
-			tempPrayer[5] = th + is;
+		for (i = first; i < first + count; i++) {
+			getPrayerTimesByDay(dc, scratchPrayers, PrayerTime.FAJR);
+			for (k = 0; k < Timetable.PRAYERS; k++) {
+				table.set(i, k, prayers[k]);
+			}
+			nextDay(date, dc);
 		}
+	}
+	
+	/**
+	 * Fill a timetable by interpolation: the full computation is only done
+	 * every <code>step</code> days, and the days in between are given by a
+	 * cubic interpolation of the times. The error of each interval is
+	 * estimated from the neighbouring computed days, and checked against
+	 * the exact times of one day out of a sample of the intervals. The days
+	 * around invalid or extreme times, times crossing midnight, and the
+	 * intervals whose error is above <code>maxError</code> are computed
+	 * exactly.
+	 * 
+	 * The error is measured on the times before rounding. When the method
+	 * rounds to the minute, an interpolated time lying on a rounding
+	 * threshold can still differ by one minute from the exact one.
+	 * @param table the timetable to fill
+	 * @param step days between two computed days, 7 is a good trade-off
+	 * @param maxError largest error accepted in seconds
+	 * @return the largest error in seconds measured by the checks
+	 * @see #getTimetable(Timetable)
+	 */
+	public int getTimetable(Timetable table, int step, int maxError) {
+		return new TimetableInterpolator(this, method, loc.getGmtDiff()).fill(
+				table, step, maxError);
+	}
+	
+	/**
+	 * Number of days between two dates
+	 * @param from first day
+	 * @param to last day (inclusive)
+	 * @return number of days, 0 if <code>to</code> is before <code>from</code>
+	 */
+	static int getDayCount(final SimpleDate from, final SimpleDate to) {
+		int count = (int) (AstroLib.getJulianDay(to, 0) - AstroLib
+				.getJulianDay(from, 0)) + 1;
+		return Math.max(count, 0);
+	}
+
+	void getPrayerTimesByDay(DayCouple dc, DayPrayers pt, PrayerTime type) {
+		getPrayerTimesByDay(method, dc, pt, type);
+	}
+	
+	void getPrayerTimesByDay(Method method, DayCouple dc, DayPrayers pt,
+			PrayerTime type) {
+		loadDay(dc);
+		computeDay(method, dc, pt, type);
+	}
+	
+	/* Fill the tAstro structure with the appropriate astronomical values for
+	 * this day, and compute the prayer times formulae which do not depend on
+	 * the method. We also pass the cache structure to update and check if
+	 * the actual values are already available. */
+	private void loadDay(DayCouple dc) {
+		loadDay(dc, ALL_PRAYERS);
+	}
+	
+	/* Same as loadDay(DayCouple), skipping the formulae of the prayers
+	 * which are not in the mask */
+	private void loadDay(DayCouple dc, int needed) {
+		context.update(loc);
+		
+		AstroLib.getAstroValuesByDay(dc.getJulianDay(), context, astroCache,
+				tAstro, astroDay, ephemeris);
+		dayDec = Utils.DEG_TO_RAD(tAstro.getDec()[1]);
+		daySh = (needed & SHUROOQ_BIT) != 0 ? getShoMag(context, tAstro,
+				PrayerTime.SHUROOQ) : 0;
+		dayTh = (needed & THUHR_BIT) != 0 ? getThuhr(loc.getDegreeLong(),
+				tAstro) : 0;
+		dayMg = (needed & MAGHRIB_BIT) != 0 ? getShoMag(context, tAstro,
+				PrayerTime.MAGHRIB) : 0;
+	}
+	
+	/* Add to a mask of prayers (bit k being the prayer k of DayPrayers)
+	 * the prayers their formulae depend on with this method */
+	private static int getDependencies(Method method, int prayers) {
+		int needed = prayers;
+		ExtremeLatitude ext = method.getExtremeLatitude();
+		
+		/* fajr and ishaa are angles before and after thuhr, assr a shadow
+		 * length after thuhr */
+		if ((prayers & (FAJR_BIT | ASSR_BIT | ISHAA_BIT)) != 0)
+			needed |= THUHR_BIT;
+		
+		/* intervals and night or day portions start at shurooq and
+		 * maghrib */
+		if ((prayers & (FAJR_BIT | ISHAA_BIT)) != 0
+				&& (method.getFajrInv() != 0 || method.getIshaaInv() != 0
+						|| ext == ExtremeLatitude.SEVEN_NIGHT_ALWAYS
+						|| ext == ExtremeLatitude.SEVEN_NIGHT_INVALID
+						|| ext == ExtremeLatitude.SEVEN_DAY_ALWAYS
+						|| ext == ExtremeLatitude.SEVEN_DAY_INVALID
+						|| ext == ExtremeLatitude.HALF_ALWAYS
+						|| ext == ExtremeLatitude.HALF_INVALID
+						|| ext == ExtremeLatitude.MIN_ALWAYS
+						|| ext == ExtremeLatitude.MIN_INVALID))
+			needed |= SHUROOQ_BIT | MAGHRIB_BIT;
+		
+		return needed;
+	}
+	
+	/* Topocentric values of the three days around the last day loaded */
+	Astro getDayAstro() {
+		return tAstro;
+	}
+	
+	/* Compute the prayer times of the day loaded by loadDay. It can be
+	 * called several times for the same day with different methods */
+	private void computeDay(Method method, DayCouple dc, DayPrayers pt,
+			PrayerTime type) {
+		computeDay(method, dc, pt, type, ALL_PRAYERS);
+	}
+	
+	/* Same as computeDay(Method, DayCouple, DayPrayers, PrayerTime) for the
+	 * prayers of a mask given by getDependencies, after loadDay was called
+	 * with the same mask. The formulae of the other prayers are replaced by
+	 * 0, which is never taken for an invalid time */
+	private void computeDay(Method method, DayCouple dc, DayPrayers pt,
+			PrayerTime type, int needed) {
+		int i;
+		boolean invalid;
+		double th, sh, mg, fj, is, ar;
+		double lon, dec;
+		
+		lon = loc.getDegreeLong();
+		dec = dayDec;
+		
+		/* Get Prayer Times formulae results for this day of year and this
+		 * location. The results are NOT the actual prayer times */
+		fj = (needed & FAJR_BIT) != 0 ? getFajIsh(context, dec, method
+				.getFajrAng()) : 0;
+		sh = daySh;
+		th = dayTh;
+		ar = (needed & ASSR_BIT) != 0 ? getAssr(context, dec, method
+				.getMathhab()) : 0;
+		mg = dayMg;
+		is = (needed & ISHAA_BIT) != 0 ? getFajIsh(context, dec, method
+				.getIshaaAng()) : 0;
+		
+		/* Calculate all prayer times as Base-10 numbers in Normal circumstances */
+		invalid = setBaseTimes(tempPrayer, 0, fj, sh, th, ar, mg, is);
 		
 		/* Calculate all prayer times as Base-10 numbers in Extreme Latitudes (if
 		 * needed) */
@@ -177,22 +848,15 @@ public class Jitl {
 		/* Reset status of extreme switches */
 		pt.setAllExtreme(false);
 		
-		if ((method.getExtremeLatitude() != ExtremeLatitude.NONE_EX)
-				&& !((method.getExtremeLatitude() == ExtremeLatitude.GOOD_INVALID
-						|| method.getExtremeLatitude() == ExtremeLatitude.LAT_INVALID
-						|| method.getExtremeLatitude() == ExtremeLatitude.SEVEN_NIGHT_INVALID
-						|| method.getExtremeLatitude() == ExtremeLatitude.SEVEN_DAY_INVALID || method
-						.getExtremeLatitude() == ExtremeLatitude.HALF_INVALID) && (invalid == 0))) {
-			double exdecPrev, exdecNext;
+		if (needsExtreme(method.getExtremeLatitude(), invalid)) {
+			double exdec;
 			double exTh = 99, exFj = 99, exIs = 99, exAr = 99, exSh = 99, exMg = 99;
 			//exIm=99
 			
 			double portion = 0;
 			double nGoodDay = 0;
 			int exinterval = 0;
-			Location exLoc = loc.copy();
-			Astro exAstroPrev;
-			Astro exAstroNext;
+			GoodDayIndex index;
 			ExtremeLatitude ext = method.getExtremeLatitude();
 			
 			/* Nearest Latitude (Method.nearestLat) */
@@ -205,15 +869,13 @@ public class Jitl {
 				
 				/* xxxthamer: we cannot compute this when interval is set because
 				 * angle==0 . Only the if-invalid methods would work */
-				exLoc.setDegreeLat(method.getNearestLat());
-				exFj = getFajIsh(method.getNearestLat(), dec, method
-						.getFajrAng());
-				//exIm = getFajIsh(method.getNearestLat(), dec, method.getImsaakAng());
-				exIs = getFajIsh(method.getNearestLat(), dec, method
-						.getIshaaAng());
-				exAr = getAssr(method.getNearestLat(), dec, method.getMathhab());
-				exSh = getShoMag(exLoc, tAstro, PrayerTime.SHUROOQ);
-				exMg = getShoMag(exLoc, tAstro, PrayerTime.MAGHRIB);
+				nearestContext.update(loc, method.getNearestLat());
+				exFj = getFajIsh(nearestContext, dec, method.getFajrAng());
+				//exIm = getFajIsh(nearestContext, dec, method.getImsaakAng());
+				exIs = getFajIsh(nearestContext, dec, method.getIshaaAng());
+				exAr = getAssr(nearestContext, dec, method.getMathhab());
+				exSh = getShoMag(nearestContext, tAstro, PrayerTime.SHUROOQ);
+				exMg = getShoMag(nearestContext, tAstro, PrayerTime.MAGHRIB);
 				
 				//switch (ext) {
 				if(ext == ExtremeLatitude.LAT_ALL) {
@@ -242,47 +904,40 @@ public class Jitl {
 				
 			} else if (ext == ExtremeLatitude.GOOD_ALL || ext == ExtremeLatitude.GOOD_INVALID 
 					|| ext == ExtremeLatitude.GOOD_DIF) {	
-				/* Nearest Good Day */				
-				exAstroPrev = astroCache;
-				exAstroNext = astroCache;
+				/* Nearest Good Day */
+				index = (type != PrayerTime.IMSAAK || goodDays.hasAngles(method)) ? goodDays
+						: imsaakGoodDays;
+				index.update(context, method, ephemeris);
 				
 				/* Start by getting last or next nearest Good Day */
-				for (i = 0; i <= dc.getLastDay(); i++) {
-					
-					/* last closest day */
-					nGoodDay = dc.getJulianDay() - i;
-					AstroLib.getAstroValuesByDay(nGoodDay, loc, exAstroPrev,
-							tAstro);
-					exdecPrev = Utils.DEG_TO_RAD(tAstro.getDec()[1]);
-					exFj = getFajIsh(lat, exdecPrev, method.getFajrAng());
-					
-					if (exFj != 99) {
-						exIs = getFajIsh(lat, exdecPrev, method.getIshaaAng());
-						if (exIs != 99) {
-							exTh = getThuhr(lon, tAstro);
-							exSh = getShoMag(loc, tAstro, PrayerTime.SHUROOQ);
-							exMg = getShoMag(loc, tAstro, PrayerTime.MAGHRIB);
-							exAr = getAssr(lat, exdecPrev, method.getMathhab());
-							break;
-						}
-					}
-					
-					/* Next closest day */
-					nGoodDay = dc.getJulianDay() + i;
-					AstroLib.getAstroValuesByDay(nGoodDay, loc, exAstroNext,
-							tAstro);
-					exdecNext = Utils.DEG_TO_RAD(tAstro.getDec()[1]);
-					exFj = getFajIsh(lat, exdecNext, method.getFajrAng());
-					if (exFj != 99) {
-						exIs = getFajIsh(lat, exdecNext, method.getIshaaAng());
-						if (exIs != 99) {
-							exTh = getThuhr(lon, tAstro);
-							exSh = getShoMag(loc, tAstro, PrayerTime.SHUROOQ);
-							exMg = getShoMag(loc, tAstro, PrayerTime.MAGHRIB);
-							exAr = getAssr(lat, exdecNext, method.getMathhab());
-							break;
-						}
+				nGoodDay = index.search(dc.getJulianDay(), dc.getLastDay(),
+						context);
+				
+				if (nGoodDay != 0) {
+					AstroLib.getAstroValuesByDay(nGoodDay, context, goodDayCache,
+							goodAstro, astroDay, ephemeris);
+					exdec = Utils.DEG_TO_RAD(goodAstro.getDec()[1]);
+					exFj = getFajIsh(context, exdec, method.getFajrAng());
+					exIs = getFajIsh(context, exdec, method.getIshaaAng());
+					exTh = getThuhr(lon, goodAstro);
+					exSh = getShoMag(context, goodAstro, PrayerTime.SHUROOQ);
+					exMg = getShoMag(context, goodAstro, PrayerTime.MAGHRIB);
+					exAr = getAssr(context, exdec, method.getMathhab());
+				} else {
+					/* No good day: keep the fajr of the last searched day and
+					 * the ishaa of the last searched day having a fajr, as the
+					 * day by day search did */
+					if (index.getLastFajrDay() != 0) {
+						AstroLib.getAstroValuesByDay(index.getLastFajrDay(), context,
+								goodDayCache, goodAstro, astroDay, ephemeris);
+						exIs = getFajIsh(context, Utils.DEG_TO_RAD(goodAstro
+								.getDec()[1]), method.getIshaaAng());
 					}
+					AstroLib.getAstroValuesByDay(dc.getJulianDay()
+							+ dc.getLastDay(), context, goodDayCache, goodAstro,
+							astroDay, ephemeris);
+					exFj = getFajIsh(context, Utils.DEG_TO_RAD(goodAstro.getDec()[1]),
+							method.getFajrAng());
 				}
 				
 				if(ext == ExtremeLatitude.GOOD_ALL) {
@@ -379,40 +1034,35 @@ public class Jitl {
 		} /* end extreme */
 		
 		/* Apply intervals if set */
-		if (method.getExtremeLatitude() != ExtremeLatitude.MIN_INVALID
-				&& method.getExtremeLatitude() != ExtremeLatitude.HALF_INVALID
-				&& method.getExtremeLatitude() != ExtremeLatitude.HALF_ALWAYS) {
-			if (method.getFajrInv() != 0)
-				tempPrayer[0] = tempPrayer[1] - (method.getFajrInv() / 60.0);
-			if (method.getIshaaInv() != 0)
-				tempPrayer[5] = tempPrayer[4] + (method.getIshaaInv() / 60.0);
-		}
+		applyIntervals(method, tempPrayer, 0);
 		
 		/* Final Step: Fill the Prayer array by doing decimal degree to
 		 * Prayer structure conversion*/
 		if (type == PrayerTime.IMSAAK || type == PrayerTime.NEXTFAJR) {
-			base6hm(tempPrayer[0], method, pt.fajr(), type);
+			dayShift[0] = base6hm(tempPrayer[0], method, pt.fajr(), type);
 		} else {
 			Prayer[] pArray = pt.getPrayers();
-			PrayerTime[] timeArray = { PrayerTime.FAJR, PrayerTime.SHUROOQ,
-					PrayerTime.THUHR, PrayerTime.ASSR, PrayerTime.MAGHRIB,
-					PrayerTime.ISHAA };
 			
 			for (i = 0; i < 6; i++) {
-				base6hm(tempPrayer[i], method, pArray[i], timeArray[i]);
+				if ((needed & (1 << i)) != 0)
+					dayShift[i] = base6hm(tempPrayer[i], method, pArray[i],
+							TIME_ARRAY[i]);
 			}
 		}
 		
 	}
 	
-	void base6hm(double bs, Method method, Prayer pt, PrayerTime type) {
-		double min, sec;
+	/* Convert a time to hours, minutes and seconds in pt. Returns the
+	 * number of days added to bring it into the 0-24 range */
+	int base6hm(double bs, Method method, Prayer pt, PrayerTime type) {
+		double min, sec, before;
+		int shift = 0;
 		
 		if (bs == 99) {
 			pt.setHour(99);
 			pt.setMinute(99);
 			pt.setSecond(0);
-			return;
+			return 0;
 		}
 		
 		/* Add offsets */
@@ -425,8 +1075,10 @@ public class Jitl {
 		
 		/* Fix after minus offsets before midnight */
 		if (bs < 0) {
-			while (bs < 0)
+			while (bs < 0) {
 				bs = 24 + bs;
+				shift--;
+			}
 		}
 		
 		min = (bs - Math.floor(bs)) * 60;
@@ -466,13 +1118,16 @@ public class Jitl {
 		/* Add daylight saving time and fix after midnight times */
 		bs += loc.getDst();
 		if (bs >= 24) {
+			before = bs;
 			bs = Math.IEEEremainder(bs, 24);
+			shift += (int) Math.round((before - bs) / 24);
 		}
 		
 		pt.setHour((int) bs);
 		pt.setMinute((int) min);
 		pt.setSecond((int) sec);
 		
+		return shift;
 	}
 	
 	/**
@@ -491,10 +1146,21 @@ public class Jitl {
 	 */
 	public Prayer getImsaak(SimpleDate date) {
 		
-		Method tmpConf;
 		DayCouple dc;
 		DayPrayers temp = new DayPrayers();
 		
+		dc = getDayInfo(date, loc.getGmtDiff());
+		loadDay(dc);
+		computeImsaak(dc, temp);
+		
+		return temp.fajr();
+	}
+	
+	/* Compute the imsaak of the day loaded by loadDay in pt.fajr() */
+	private void computeImsaak(DayCouple dc, DayPrayers pt) {
+		
+		Method tmpConf;
+		
 		tmpConf = method.copy();
 		
 		if (method.getFajrInv() != 0) {
@@ -514,14 +1180,13 @@ public class Jitl {
 			tmpConf.setFajrAng(tmpConf.getFajrAng() + method.getImsaakAng());
 		}
 		
-		dc = getDayInfo(date, loc.getGmtDiff());
-		getPrayerTimesByDay(tmpConf, dc, temp, PrayerTime.IMSAAK);
+		computeDay(tmpConf, dc, pt, PrayerTime.IMSAAK);
 		
 		/* xxxthamer: We probably need to check whether it's possible to compute
 		 * Imsaak normally for some extreme methods first */
 		/* In case of an extreme Fajr time calculation use intervals for Imsaak and
 		 * compute again */
-		if (temp.fajr().isExtreme()) {
+		if (pt.fajr().isExtreme()) {
 			tmpConf = method.copy();
 			if (method.getImsaakInv() == 0) {
 				tmpConf.setFajrOffset(tmpConf.getFajrOffset()
@@ -532,10 +1197,8 @@ public class Jitl {
 						- method.getImsaakInv());
 				tmpConf.setOffset(true);
 			}
-			getPrayerTimesByDay(tmpConf, dc, temp, PrayerTime.IMSAAK);
+			computeDay(tmpConf, dc, pt, PrayerTime.IMSAAK);
 		}
-		
-		return temp.fajr();
 	}
 	
 	/**
@@ -585,11 +1248,18 @@ public class Jitl {
 		return temp.fajr().copy();
 	}
 	
-	static double getFajIsh(double Lat, double dec, double Ang) {
+	static double getFajIsh(LocationContext ctx, double dec, double Ang) {
+		return getFajIsh(ctx.getSinLat(), ctx.getCosLat(), Math.sin(dec),
+				Math.cos(dec), Math.sin(Utils.DEG_TO_RAD(Ang)));
+	}
+	
+	/* Same as getFajIsh(LocationContext, double, double) from the sines and
+	 * cosines of the latitude, of the declination and of the angle */
+	static double getFajIsh(double sinLat, double cosLat, double sinDec,
+			double cosDec, double sinAng) {
 		
-		double part1 = Math.cos(Utils.DEG_TO_RAD(Lat)) * Math.cos(dec);
-		double part2 = -Math.sin(Utils.DEG_TO_RAD(Ang))
-		- Math.sin(Utils.DEG_TO_RAD(Lat)) * Math.sin(dec);
+		double part1 = cosLat * cosDec;
+		double part2 = -sinAng - sinLat * sinDec;
 		
 		double part3 = part2 / part1;
 		if (part3 <= Utils.INVALID_TRIGGER) {
@@ -600,73 +1270,81 @@ public class Jitl {
 		
 	}
 	
-	static double getShoMag(Location loc, Astro astro, PrayerTime type) {
-		double lhour, M, sidG, ra0 = astro.getRa()[0], ra2 = astro.getRa()[2];
-		double A, B, H, sunAlt, R, tH;
+	static double getShoMag(LocationContext ctx, Astro astro, PrayerTime type) {
+		double lhour;
+		double d = Utils.DEG_TO_RAD(astro.getDec()[1]);
+		
+		lhour = getSunHourAngle(ctx.getSinLat(), ctx.getCosLat(), Math.sin(d),
+				Math.cos(d));
+		if (lhour < 0)
+			return 99;
+		
+		if (type == PrayerTime.SHUROOQ)
+			lhour = -lhour;
+		else if (type != PrayerTime.MAGHRIB)
+			lhour = 0;
+		
+		return getShoMag(ctx.getSinLat(), ctx.getCosLat(), ctx.getDegreeLong(),
+				ctx.getRefraction(), ctx.getAltitudeRefraction(), astro.getRa(),
+				astro.getDec(), 0, astro.getSid()[1], astro.getDra()[1], lhour);
+	}
+	
+	/* Hour angle in degrees of the sun at sunrise and sunset, from the
+	 * day declination. Returns -1 if the sun does not cross the horizon */
+	static double getSunHourAngle(double sinLat, double cosLat,
+			double sinDec, double cosDec) {
 		
-		double part1 = Math.sin(Utils.DEG_TO_RAD(loc.getDegreeLat()))
-		* Math.sin(Utils.DEG_TO_RAD(astro.getDec()[1]));
+		double part1 = sinLat * sinDec;
 		double part2a = Utils.CENTER_OF_SUN_ANGLE;
 		double part2 = Math.sin(Utils.DEG_TO_RAD(part2a)) - part1;
-		double part3 = Math.cos(Utils.DEG_TO_RAD(loc.getDegreeLat()))
-		* Math.cos(Utils.DEG_TO_RAD(astro.getDec()[1]));
+		double part3 = cosLat * cosDec;
 		
 		double part4 = part2 / part3;
 		
 		if (part4 <= -1 || part4 >= 1)
-			return 99;
+			return -1;
 		
-		lhour = AstroLib.limitAngle180((Utils.RAD_TO_DEG(Math.acos(part4))));
-		M = ((astro.getRa()[1] - loc.getDegreeLong() - astro.getSid()[1]) / 360.0);
-		
-		if (type == PrayerTime.SHUROOQ)
-			M = M - (lhour / 360.0);
-		if (type == PrayerTime.MAGHRIB)
-			M = M + (lhour / 360.0);
+		return AstroLib.limitAngle180((Utils.RAD_TO_DEG(Math.acos(part4))));
+	}
+	
+	/* Shurooq (lhour negative) or maghrib (lhour positive) from the hour
+	 * angle of getSunHourAngle. The topocentric window is ra[k] to
+	 * ra[k + 2] and dec[k] to dec[k + 2], sid and dra being those of the
+	 * middle day. refraction and altitudeRefraction are the terms of
+	 * LocationContext */
+	static double getShoMag(double sinLat, double cosLat, double lon,
+			double refraction, double altitudeRefraction, double[] ra,
+			double[] dec, int k, double sid, double dra, double lhour) {
+		double M, sidG;
+		double A, B, H, sunAlt, R, tH;
+		double dec0 = dec[k], dec1 = dec[k + 1], dec2 = dec[k + 2];
 		
+		M = ((ra[k + 1] - lon - sid) / 360.0);
+		M = M + (lhour / 360.0);
 		M = AstroLib.limitAngle111(M);
 		
-		sidG = AstroLib.limitAngle(astro.getSid()[1] + 360.985647 * M);
+		sidG = AstroLib.limitAngle(sid + 360.985647 * M);
 		
-		ra0 = astro.getRa()[0];
-		ra2 = astro.getRa()[2];
+		A = interpolateRa(ra, k, M);
 		
-		if (astro.getRa()[1] > 350 && astro.getRa()[2] < 10)
-			ra2 += 360;
-		if (astro.getRa()[0] > 350 && astro.getRa()[1] < 10)
-			ra0 = 0;
-		
-		A = astro.getRa()[1]
-		                  + (M
-		                		  * ((astro.getRa()[1] - ra0) + (ra2 - astro.getRa()[1]) + ((ra2 - astro
-		                				  .getRa()[1]) - (astro.getRa()[1] - ra0))
-		                				  * M) / 2.0);
-		
-		B = astro.getDec()[1]
-		                   + (M
-		                		   * ((astro.getDec()[1] - astro.getDec()[0])
-		                				   + (astro.getDec()[2] - astro.getDec()[1]) + ((astro
-		                						   .getDec()[2] - astro.getDec()[1]) - (astro
-		                								   .getDec()[1] - astro.getDec()[0]))
-		                								   * M) / 2.0);
+		B = dec1 + (M * ((dec1 - dec0) + (dec2 - dec1) + ((dec2 - dec1)
+				- (dec1 - dec0)) * M) / 2.0);
 		
-		H = AstroLib.limitAngle180between(sidG + loc.getDegreeLong() - A);
+		H = AstroLib.limitAngle180between(sidG + lon - A);
 		
-		tH = H - Utils.RAD_TO_DEG(astro.getDra()[1]);
+		tH = H - Utils.RAD_TO_DEG(dra);
 		
-		sunAlt = Utils.RAD_TO_DEG(Math.asin(Math.sin(Utils.DEG_TO_RAD(loc
-				.getDegreeLat()))
+		sunAlt = Utils.RAD_TO_DEG(Math.asin(sinLat
 				* Math.sin(Utils.DEG_TO_RAD(B))
-				+ Math.cos(Utils.DEG_TO_RAD(loc.getDegreeLat()))
+				+ cosLat
 				* Math.cos(Utils.DEG_TO_RAD(B))
 				* Math.cos(Utils.DEG_TO_RAD(tH))));
 		
-		sunAlt += AstroLib.getRefraction(loc, sunAlt);
+		sunAlt += AstroLib.getRefraction(refraction, sunAlt);
 		
-		R = (M + ((sunAlt - Utils.CENTER_OF_SUN_ANGLE + (Utils.ALTITUDE_REFRACTION * Math
-				.pow(loc.getSeaLevel(), 0.5))) / (360.0
+		R = (M + ((sunAlt - Utils.CENTER_OF_SUN_ANGLE + altitudeRefraction) / (360.0
 						* Math.cos(Utils.DEG_TO_RAD(B))
-						* Math.cos(Utils.DEG_TO_RAD(loc.getDegreeLat())) * Math
+						* cosLat * Math
 						.sin(Utils.DEG_TO_RAD(tH)))));
 		
 		return (R * 24.0);
@@ -674,39 +1352,57 @@ public class Jitl {
 	}
 	
 	static double getThuhr(double lon, Astro astro) {
+		return getThuhr(lon, astro.getRa(), 0, astro.getSid()[1]);
+	}
+	
+	/* Same as getThuhr(double, Astro) for the window ra[k] to ra[k + 2], sid
+	 * being the sidereal time of the middle day */
+	static double getThuhr(double lon, double[] ra, int k, double sid) {
 		
 		double M, sidG;
-		double ra0 = astro.getRa()[0], ra2 = astro.getRa()[2];
 		double A, H;
 		
-		M = ((astro.getRa()[1] - lon - astro.getSid()[1]) / 360.0);
+		M = ((ra[k + 1] - lon - sid) / 360.0);
 		M = AstroLib.limitAngle111(M);
-		sidG = astro.getSid()[1] + 360.985647 * M;
+		sidG = sid + 360.985647 * M;
 		
-		if (astro.getRa()[1] > 350 && astro.getRa()[2] < 10)
-			ra2 += 360;
-		if (astro.getRa()[0] > 350 && astro.getRa()[1] < 10)
-			ra0 = 0;
-		
-		A = astro.getRa()[1]
-		                  + (M
-		                		  * ((astro.getRa()[1] - ra0) + (ra2 - astro.getRa()[1]) + ((ra2 - astro
-		                				  .getRa()[1]) - (astro.getRa()[1] - ra0))
-		                				  * M) / 2.0);
+		A = interpolateRa(ra, k, M);
 		
 		H = AstroLib.limitAngle180between(sidG + lon - A);
 		
 		return 24.0 * (M - H / 360.0);
 	}
 	
-	static double getAssr(double Lat, double dec, Mathhab mathhab) {
+	/* Right ascension of the window ra[k] to ra[k + 2] interpolated at the
+	 * fraction of day M, when it wraps at the march equinox */
+	static double interpolateRa(double[] ra, int k, double M) {
+		double ra0 = ra[k], ra1 = ra[k + 1], ra2 = ra[k + 2];
+		
+		if (ra1 > 350 && ra2 < 10)
+			ra2 += 360;
+		if (ra0 > 350 && ra1 < 10)
+			ra0 = 0;
+		
+		return ra1 + (M * ((ra1 - ra0) + (ra2 - ra1) + ((ra2 - ra1)
+				- (ra1 - ra0)) * M) / 2.0);
+	}
+	
+	static double getAssr(LocationContext ctx, double dec, Mathhab mathhab) {
+		return getAssr(ctx.getDegreeLat(), ctx.getSinLat(), ctx.getCosLat(),
+				dec, mathhab);
+	}
+	
+	/* Same as getAssr(LocationContext, double, Mathhab) from the latitude,
+	 * its sine and its cosine */
+	static double getAssr(double degreeLat, double sinLat, double cosLat,
+			double dec, Mathhab mathhab) {
 		double part1, part2, part3, part4, ndec;
 		int mathhabValue = (mathhab == Mathhab.SHAAFI ? 1 : 2);
-		double rlat = Utils.DEG_TO_RAD(Lat);
+		double rlat = Utils.DEG_TO_RAD(degreeLat);
 		
 		/* Reverse if at or near the southern hemisphere - Modified by Imran, copied from libitl-0.7.0 */
 		ndec = dec;
-		if (Lat < 0.0) {
+		if (degreeLat < 0.0) {
 			ndec = -dec;
 		}
 		part1 = mathhabValue + Math.tan(rlat - ndec);
@@ -716,8 +1412,8 @@ public class Jitl {
 		
 		part2 = (Utils.PI / 2.0) - Math.atan(part1);
 		/* Compute the hour angle - Modified by Imran, copied from libitl-0.7.0 */
-		part3 = Math.sin(part2) - (Math.sin(rlat) * Math.sin(ndec));
-		part4 = (part3 / (Math.cos(rlat) * Math.cos(ndec)));
+		part3 = Math.sin(part2) - (sinLat * Math.sin(ndec));
+		part4 = (part3 / (cosLat * Math.cos(ndec)));
 		
 		/*  if (part4 > 1) */
 		/*      return 99; */
@@ -725,27 +1421,86 @@ public class Jitl {
 		return Utils.DEG_TO_10_BASE * Utils.RAD_TO_DEG(Math.acos(part4));
 	}
 	
+	/* Prayer times in base-10 hours from the results of the formulae, into
+	 * times[k] to times[k + 5]. Returns true if one of them is invalid */
+	static boolean setBaseTimes(double[] times, int k, double fj, double sh,
+			double th, double ar, double mg, double is) {
+		boolean invalid = false;
+		
+		/* Fajr */
+		if (fj == 99) {
+			times[k] = 99;
+			invalid = true;
+		} else {
+			times[k] = th - fj;
+		}
+		
+		if (sh == 99) {
+			invalid = true;
+		}
+		
+		times[k + 1] = sh;
+		times[k + 2] = th;
+		times[k + 3] = th + ar;
+		times[k + 4] = mg;
+		
+		if (mg == 99) {
+			invalid = true;
+		}
+		
+		/* Ishaa */
+		if (is == 99) {
+			times[k + 5] = 99;
+			invalid = true;
+		} else {
+			times[k + 5] = th + is;
+		}
+		return invalid;
+	}
+	
+	/* True if the extreme latitude method applies to a day, invalid telling
+	 * whether one of its times could not be computed */
+	static boolean needsExtreme(ExtremeLatitude ext, boolean invalid) {
+		return (ext != ExtremeLatitude.NONE_EX)
+				&& !((ext == ExtremeLatitude.GOOD_INVALID
+						|| ext == ExtremeLatitude.LAT_INVALID
+						|| ext == ExtremeLatitude.SEVEN_NIGHT_INVALID
+						|| ext == ExtremeLatitude.SEVEN_DAY_INVALID
+						|| ext == ExtremeLatitude.HALF_INVALID) && !invalid);
+	}
+	
+	/* Apply the fajr and ishaa intervals of the method, if set, to the times
+	 * times[k] to times[k + 5] */
+	static void applyIntervals(Method method, double[] times, int k) {
+		if (method.getExtremeLatitude() != ExtremeLatitude.MIN_INVALID
+				&& method.getExtremeLatitude() != ExtremeLatitude.HALF_INVALID
+				&& method.getExtremeLatitude() != ExtremeLatitude.HALF_ALWAYS) {
+			if (method.getFajrInv() != 0)
+				times[k] = times[k + 1] - (method.getFajrInv() / 60.0);
+			if (method.getIshaaInv() != 0)
+				times[k + 5] = times[k + 4] + (method.getIshaaInv() / 60.0);
+		}
+	}
+	
 	static int getDayofYear(int year, int month, int day) {
 		int i;
 		int isLeap = (((year & 3) == 0) && ((year % 100) != 0 || (year % 400) == 0)) ? 1
 				: 0;
 		
-		char dayList[][] = {
-				{ 0, 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 },
-				{ 0, 31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 } };
-		
 		for (i = 1; i < month; i++)
-			day += dayList[isLeap][i];
+			day += DAY_LIST[isLeap][i];
 		
 		return day;
 	}
 	
 	static DayCouple getDayInfo(SimpleDate date, double gmt) {
-		int ld;
-		double jd;
-		ld = getDayofYear(date.getYear(), 12, 31);
-		jd = AstroLib.getJulianDay(date, gmt);
-		return new DayCouple(ld, jd);
+		return getDayInfo(date, gmt, new DayCouple(0, 0));
+	}
+	
+	static DayCouple getDayInfo(SimpleDate date, double gmt, DayCouple dc) {
+		dc.setLastDay(getDayofYear(date.getYear(), 12, 31));
+		dc.setJulianDay(AstroLib.getJulianDay(date, gmt));
+		return dc;
 	}
 	
 	/* Obtaining the direction of the shortest distance towards Qibla by uMath.sing the
@@ -757,19 +1512,56 @@ public class Jitl {
 	 * @return a Dms object containg qibla direction 
 	 */
 	static public Dms getNorthQibla(Location loc) {
-		/* xxxthamer: reduce Utils.DEG_TO_RAD usage */
-		double num, denom;
-		num = Math.sin(Utils.DEG_TO_RAD(loc.getDegreeLong())
-				- Utils.DEG_TO_RAD(Utils.KAABA_LONG));
-		denom = (Math.cos(Utils.DEG_TO_RAD(loc.getDegreeLat())) * Math
-				.tan(Utils.DEG_TO_RAD(Utils.KAABA_LAT)))
-				- (Math.sin(Utils.DEG_TO_RAD(loc.getDegreeLat())) * ((Math
-						.cos((Utils.DEG_TO_RAD(loc.getDegreeLong()) - Utils
-								.DEG_TO_RAD(Utils.KAABA_LONG))))));
+		double num, denom, dLong;
+		dLong = Utils.DEG_TO_RAD(loc.getDegreeLong()) - KAABA_LONG_RAD;
+		num = Math.sin(dLong);
+		denom = (Math.cos(Utils.DEG_TO_RAD(loc.getDegreeLat())) * KAABA_TAN_LAT)
+				- (Math.sin(Utils.DEG_TO_RAD(loc.getDegreeLat())) * Math
+						.cos(dLong));
 		return new Dms(Utils.RAD_TO_DEG(Math.atan2(num, denom)));
 		
 	}
 	
+	/**
+	 * Generate the qibla direction and the distance to the Kaaba of many
+	 * locations. The directions are the same as getNorthQibla, without
+	 * creating a Location and a Dms for each location. The distance
+	 * reuses the terms of the direction (haversine formula on a sphere of
+	 * radius EARTH_RADIUS), adding a sine, an arc tangent and two square
+	 * roots.
+	 * @param lat latitudes of the locations in degrees
+	 * @param lon longitudes of the locations in degrees
+	 * @param count number of locations
+	 * @param bearings receives the qibla directions in degrees from the
+	 * north, as the decimal value of getNorthQibla
+	 * @param distances receives the distances to the Kaaba in kilometers,
+	 * or null when they are not needed
+	 */
+	public static void getNorthQibla(double[] lat, double[] lon, int count,
+			double[] bearings, double[] distances) {
+		int i;
+		double phi, dLong, sinPhi, cosPhi, cosDLong, sinHalfLat, a;
+		
+		for (i = 0; i < count; i++) {
+			phi = Utils.DEG_TO_RAD(lat[i]);
+			dLong = Utils.DEG_TO_RAD(lon[i]) - KAABA_LONG_RAD;
+			sinPhi = Math.sin(phi);
+			cosPhi = Math.cos(phi);
+			cosDLong = Math.cos(dLong);
+			bearings[i] = Utils.RAD_TO_DEG(Math.atan2(Math.sin(dLong), (cosPhi
+					* KAABA_TAN_LAT) - (sinPhi * cosDLong)));
+			
+			if (distances != null) {
+				/* sin(dLong / 2)^2 is (1 - cos dLong) / 2 */
+				sinHalfLat = Math.sin((phi - KAABA_LAT_RAD) / 2);
+				a = sinHalfLat * sinHalfLat + cosPhi * KAABA_COS_LAT
+						* (1 - cosDLong) / 2;
+				distances[i] = 2 * EARTH_RADIUS
+						* Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+			}
+		}
+	}
+	
 	/**
 	 * generate qibla direction
 	 * @return a Dms object containing qibla direction for the current location
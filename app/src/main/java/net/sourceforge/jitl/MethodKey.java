@@ -0,0 +1,83 @@
+package net.sourceforge.jitl;
+
+/**
+ * Immutable value of a calculation method, usable as a hash key. Two keys
+ * are equal when all the settings of their methods are equal.
+ */
+public final class MethodKey {
+	
+	/* private copy, never modified */
+	private final Method method;
+	
+	private final int hash;
+	
+	/**
+	 * @param method the method, only read by the constructor
+	 */
+	public MethodKey(Method method) {
+		int h;
+		
+		this.method = method.copy();
+		
+		h = Double.hashCode(method.getFajrAng());
+		h = 31 * h + Double.hashCode(method.getIshaaAng());
+		h = 31 * h + Double.hashCode(method.getImsaakAng());
+		h = 31 * h + method.getFajrInv();
+		h = 31 * h + method.getIshaaInv();
+		h = 31 * h + method.getImsaakInv();
+		h = 31 * h + System.identityHashCode(method.getRound());
+		h = 31 * h + System.identityHashCode(method.getMathhab());
+		h = 31 * h + Double.hashCode(method.getNearestLat());
+		h = 31 * h + System.identityHashCode(method.getExtremeLatitude());
+		h = 31 * h + (method.getOffset() ? 1 : 0);
+		h = 31 * h + Double.hashCode(method.getFajrOffset());
+		h = 31 * h + Double.hashCode(method.getShurooqOffset());
+		h = 31 * h + Double.hashCode(method.getThuhrOffset());
+		h = 31 * h + Double.hashCode(method.getAssrOffset());
+		h = 31 * h + Double.hashCode(method.getMaghribOffset());
+		h = 31 * h + Double.hashCode(method.getIshaaOffset());
+		this.hash = h;
+	}
+	
+	/**
+	 * @return a new method with the settings of the key
+	 */
+	public Method toMethod() {
+		return method.copy();
+	}
+	
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof MethodKey) || hash != ((MethodKey) o).hash) {
+			return false;
+		}
+		return same(method, ((MethodKey) o).method);
+	}
+	
+	/* true if all the settings of two methods are equal */
+	static boolean same(Method method, Method m) {
+		return Double.compare(method.getFajrAng(), m.getFajrAng()) == 0
+				&& Double.compare(method.getIshaaAng(), m.getIshaaAng()) == 0
+				&& Double.compare(method.getImsaakAng(), m.getImsaakAng()) == 0
+				&& method.getFajrInv() == m.getFajrInv()
+				&& method.getIshaaInv() == m.getIshaaInv()
+				&& method.getImsaakInv() == m.getImsaakInv()
+				&& method.getRound() == m.getRound()
+				&& method.getMathhab() == m.getMathhab()
+				&& Double.compare(method.getNearestLat(), m.getNearestLat()) == 0
+				&& method.getExtremeLatitude() == m.getExtremeLatitude()
+				&& method.getOffset() == m.getOffset()
+				&& Double.compare(method.getFajrOffset(), m.getFajrOffset()) == 0
+				&& Double.compare(method.getShurooqOffset(), m.getShurooqOffset()) == 0
+				&& Double.compare(method.getThuhrOffset(), m.getThuhrOffset()) == 0
+				&& Double.compare(method.getAssrOffset(), m.getAssrOffset()) == 0
+				&& Double.compare(method.getMaghribOffset(), m.getMaghribOffset()) == 0
+				&& Double.compare(method.getIshaaOffset(), m.getIshaaOffset()) == 0;
+	}
+	
+	public int hashCode() {
+		return hash;
+	}
+}
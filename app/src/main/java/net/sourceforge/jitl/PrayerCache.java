@@ -0,0 +1,181 @@
+package net.sourceforge.jitl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.sourceforge.jitl.astro.Location;
+import net.sourceforge.jitl.astro.LocationKey;
+import net.sourceforge.jitl.astro.SimpleDate;
+
+/**
+ * Bounded cache of prayer times in front of the engine.
+ *
+ * Results are keyed by the location quantised to a grid (see LocationKey),
+ * the method (see MethodKey) and the date. The times are computed for the
+ * centre of the grid cell, so every location of a cell gets the same times
+ * whether they come from the cache or not. When the cache is full, the
+ * least recently used day is dropped.
+ *
+ * The cache can be shared by several threads; the computations are done
+ * outside of the lock by a ConcurrentJitl.
+ */
+public class PrayerCache {
+	
+	/**
+	 * default grid precision in degrees, about a kilometre
+	 */
+	public static final double DEFAULT_PRECISION = 0.01;
+	
+	private final double precision;
+	
+	private final ConcurrentJitl engine = new ConcurrentJitl();
+	
+	private final LinkedHashMap<Key, DayPrayers> days;
+	
+	private long hits, misses;
+	
+	/**
+	 * @param capacity maximum number of days kept
+	 * @param precision size of the grid cells in degrees
+	 */
+	public PrayerCache(final int capacity, double precision) {
+		this.precision = precision;
+		this.days = new LinkedHashMap<Key, DayPrayers>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			protected boolean removeEldestEntry(Map.Entry<Key, DayPrayers> e) {
+				return size() > capacity;
+			}
+		};
+	}
+	
+	/**
+	 * Cache using the default precision
+	 * @param capacity maximum number of days kept
+	 */
+	public PrayerCache(int capacity) {
+		this(capacity, DEFAULT_PRECISION);
+	}
+	
+	/**
+	 * Create a DayPrayers instance and fill it with prayer times
+	 * @param loc the location
+	 * @param method the method used in the calculation
+	 * @param date the date of prayers
+	 * @return a DayPrayers instance containing prayer times
+	 */
+	public DayPrayers getPrayerTimes(Location loc, Method method,
+			SimpleDate date) {
+		DayPrayers dp = new DayPrayers();
+		getPrayerTimes(loc, method, date, dp);
+		
+		return dp;
+	}
+	
+	/**
+	 * Fill a DayPrayers object with prayer times, from the cache if the
+	 * day is there
+	 * @param loc the location
+	 * @param method the method used in the calculation
+	 * @param date the date of prayers
+	 * @param pt object receiving the prayer times
+	 */
+	public void getPrayerTimes(Location loc, Method method, SimpleDate date,
+			DayPrayers pt) {
+		LocationKey locKey;
+		MethodKey methodKey;
+		Key key;
+		DayPrayers found;
+		
+		locKey = new LocationKey(loc, precision);
+		methodKey = new MethodKey(method);
+		key = new Key(locKey, methodKey, Jitl.getEpochDay(date));
+		
+		synchronized (this) {
+			found = days.get(key);
+			if (found != null) {
+				hits++;
+			} else {
+				misses++;
+			}
+		}
+		
+		if (found == null) {
+			found = new DayPrayers();
+			engine.getPrayerTimes(locKey.toLocation(), methodKey.toMethod(),
+					date, found);
+			synchronized (this) {
+				days.put(key, found);
+			}
+		}
+		copy(found, pt);
+	}
+	
+	/**
+	 * @return number of calls answered from the cache
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	/**
+	 * @return number of calls which computed the prayer times
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	/**
+	 * @return number of days in the cache
+	 */
+	public synchronized int size() {
+		return days.size();
+	}
+	
+	/**
+	 * Drop all the days and reset the counters
+	 */
+	public synchronized void clear() {
+		days.clear();
+		hits = 0;
+		misses = 0;
+	}
+	
+	private static void copy(DayPrayers from, DayPrayers to) {
+		int i;
+		
+		for (i = 0; i < 6; i++) {
+			DaySchedule.copy(from.getPrayers()[i], to.getPrayers()[i]);
+		}
+	}
+	
+	private static final class Key {
+		
+		private final LocationKey loc;
+		
+		private final MethodKey method;
+		
+		private final long day;
+		
+		Key(LocationKey loc, MethodKey method, long day) {
+			this.loc = loc;
+			this.method = method;
+			this.day = day;
+		}
+		
+		public boolean equals(Object o) {
+			Key k;
+			
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			k = (Key) o;
+			return day == k.day && loc.equals(k.loc) && method.equals(k.method);
+		}
+		
+		public int hashCode() {
+			return (loc.hashCode() * 31 + method.hashCode()) * 31
+					+ Long.hashCode(day);
+		}
+	}
+}
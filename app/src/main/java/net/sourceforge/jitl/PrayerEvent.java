@@ -0,0 +1,72 @@
+package net.sourceforge.jitl;
+
+import net.sourceforge.jitl.astro.SimpleDate;
+
+/**
+ * A prayer time of a given day, as produced by
+ * <code>Jitl.getPrayerEvents</code> and <code>Jitl.nextEvent</code>
+ */
+public class PrayerEvent {
+	
+	private final long day;
+	
+	private final PrayerTime kind;
+	
+	private final long instant;
+	
+	private final boolean extreme;
+	
+	PrayerEvent(long day, PrayerTime kind, long instant, boolean extreme) {
+		this.day = day;
+		this.kind = kind;
+		this.instant = instant;
+		this.extreme = extreme;
+	}
+	
+	/**
+	 * @return the date of the day the prayer belongs to
+	 */
+	public SimpleDate getDate() {
+		SimpleDate date = new SimpleDate(1, 1, 1970);
+		Jitl.setEpochDay(date, day);
+		return date;
+	}
+	
+	/**
+	 * @return number of days between 1970-01-01 and the date of the prayer
+	 */
+	public long getEpochDay() {
+		return day;
+	}
+	
+	/**
+	 * @return the prayer (PrayerTime.FAJR to PrayerTime.ISHAA, shuruq
+	 * being PrayerTime.SHUROOQ)
+	 */
+	public PrayerTime getKind() {
+		return kind;
+	}
+	
+	/**
+	 * @return the time as UTC epoch seconds, Jitl.INVALID_INSTANT if it
+	 * cannot be computed at the location
+	 */
+	public long getInstant() {
+		return instant;
+	}
+	
+	/**
+	 * @return true if the time was computed through an extreme latitude
+	 * method
+	 */
+	public boolean isExtreme() {
+		return extreme;
+	}
+	
+	/**
+	 * @return true if the time could be computed
+	 */
+	public boolean isValid() {
+		return instant != Jitl.INVALID_INSTANT;
+	}
+}
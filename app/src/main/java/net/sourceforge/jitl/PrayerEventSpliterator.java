@@ -0,0 +1,130 @@
+package net.sourceforge.jitl;
+
+import java.util.Spliterator;
+import java.util.TimeZone;
+import java.util.function.Consumer;
+
+import net.sourceforge.jitl.astro.Location;
+import net.sourceforge.jitl.astro.SimpleDate;
+import net.sourceforge.jitl.astro.SolarEphemeris;
+
+/**
+ * Spliterator over the prayer events of a range of days, six events per
+ * day.
+ *
+ * Days are computed lazily, one at a time. Splitting cuts the remaining
+ * days in two blocks, and every part creates its own Jitl when it starts
+ * computing, so each part walks its days with its own astro window and
+ * nothing is shared between the threads of a parallel stream but the
+ * immutable location, method and ephemeris.
+ */
+class PrayerEventSpliterator implements Spliterator<PrayerEvent> {
+	
+	/* Parts smaller than this are not split */
+	private static final int MIN_SPLIT_DAYS = 32;
+	
+	/* Days split off an unbounded range */
+	private static final int OPEN_SPLIT_DAYS = 366;
+	
+	private final Location loc;
+	
+	private final Method method;
+	
+	private final SolarEphemeris ephemeris;
+	
+	private final TimeZone zone;
+	
+	/* Next day to compute and first day after the range (epoch days),
+	 * end is Long.MAX_VALUE for an unbounded range */
+	private long day;
+	
+	private final long end;
+	
+	private Jitl jitl;
+	
+	private SimpleDate date;
+	
+	private DayPrayers prayers;
+	
+	private final long instants[] = new long[6];
+	
+	/* Next event of the current day to return, 6 when it is consumed */
+	private int pos = 6;
+	
+	private long current;
+	
+	PrayerEventSpliterator(Location loc, Method method,
+			SolarEphemeris ephemeris, TimeZone zone, long day, long end) {
+		this.loc = loc;
+		this.method = method;
+		this.ephemeris = ephemeris;
+		this.zone = zone;
+		this.day = day;
+		this.end = end;
+	}
+	
+	public boolean tryAdvance(Consumer<? super PrayerEvent> action) {
+		if (pos == 6) {
+			if (day >= end) {
+				return false;
+			}
+			computeDay();
+		}
+		action.accept(new PrayerEvent(current, Jitl.TIME_ARRAY[pos], instants[pos],
+				prayers.getPrayers()[pos].isExtreme()));
+		pos++;
+		return true;
+	}
+	
+	public Spliterator<PrayerEvent> trySplit() {
+		long mid;
+		PrayerEventSpliterator prefix;
+		
+		/* only whole days are handed over */
+		if (pos != 6) {
+			return null;
+		}
+		if (end == Long.MAX_VALUE) {
+			mid = day + OPEN_SPLIT_DAYS;
+		} else if (end - day >= 2 * MIN_SPLIT_DAYS) {
+			mid = day + (end - day) / 2;
+		} else {
+			return null;
+		}
+		
+		prefix = new PrayerEventSpliterator(loc, method, ephemeris, zone, day,
+				mid);
+		day = mid;
+		return prefix;
+	}
+	
+	public long estimateSize() {
+		if (end == Long.MAX_VALUE) {
+			return Long.MAX_VALUE;
+		}
+		return (end - day) * 6 + (6 - pos);
+	}
+	
+	public int characteristics() {
+		int c = ORDERED | NONNULL | IMMUTABLE;
+		
+		if (end != Long.MAX_VALUE) {
+			c |= SIZED | SUBSIZED;
+		}
+		return c;
+	}
+	
+	private void computeDay() {
+		if (jitl == null) {
+			jitl = new Jitl(loc, method);
+			jitl.setEphemeris(ephemeris);
+			date = new SimpleDate(1, 1, 1970);
+			prayers = new DayPrayers();
+		}
+		
+		Jitl.setEpochDay(date, day);
+		jitl.getPrayerInstants(date, day, zone, prayers, instants, 0);
+		current = day++;
+		pos = 0;
+	}
+}
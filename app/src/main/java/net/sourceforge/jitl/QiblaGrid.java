@@ -0,0 +1,267 @@
+package net.sourceforge.jitl;
+
+import net.sourceforge.jitl.astro.AstroLib;
+import net.sourceforge.jitl.astro.Direction;
+import net.sourceforge.jitl.astro.Location;
+
+/**
+ * Qibla directions of the whole earth precomputed on a latitude and
+ * longitude grid, for the screens querying them at a high rate.
+ *
+ * The directions of the grid nodes are kept in a float array (1801 rows
+ * of 3601 nodes, about 26 MB, for a step of 0.1 degrees) and a lookup
+ * interpolates bilinearly between the four nodes of its cell, a few array
+ * reads instead of the trigonometric calls of getNorthQibla. When the grid
+ * is built, the interpolation is checked against getNorthQibla at the
+ * centre and at the middle of the edges of every cell, which costs about
+ * three more directions per cell. The error elsewhere in a cell can be a
+ * little higher than the measured one (less than twice in our tests).
+ * The cells where the direction turns too fast to be interpolated, around
+ * the Kaaba and its antipode, are flagged as singular and their lookups
+ * use getNorthQibla. The grid does not change
+ * once built and can be shared between threads.
+ * @see Jitl#getNorthQibla(Location)
+ */
+public class QiblaGrid {
+	
+	/* Spread of the directions of a cell, in degrees, above which it is
+	 * singular whatever its measured error */
+	private static final double MAX_SPREAD = 90;
+	
+	private final double step;
+	
+	private final int rows;
+	
+	private final int columns;
+	
+	/* Directions of the nodes in degrees, row by row from the south pole,
+	 * each row going east from longitude -180 */
+	private final float directions[];
+	
+	/* Singular cells, bit i * (columns - 1) + j for the cell of nodes
+	 * (i, j) to (i + 1, j + 1) */
+	private final long singular[];
+	
+	private double maxError;
+	
+	private int singularCells;
+	
+	/**
+	 * Creates the grid, computing the directions of its nodes and checking
+	 * its cells
+	 * @param step distance between two nodes in degrees, a divisor of 180
+	 * such as 0.1 or 0.25
+	 * @param maxError largest interpolation error in degrees accepted in a
+	 * cell, the cells measured above it are singular
+	 * @throws IllegalArgumentException if step is not a divisor of 180
+	 */
+	public QiblaGrid(double step, double maxError) {
+		int i, j, cells;
+		double lat[], nodeLon[], centreLon[], row[];
+		double south[], north[], west[], centre[], swap[];
+		
+		/* The top row must fall on the north pole, or the lookups near it
+		 * would extrapolate */
+		if (!(step > 0 && step <= 90)
+				|| Math.abs(Math.round(180 / step) * step - 180) > 1e-9)
+			throw new IllegalArgumentException("step " + step
+					+ " is not a divisor of 180");
+		
+		this.step = step;
+		rows = (int) Math.round(180 / step) + 1;
+		columns = (int) Math.round(360 / step) + 1;
+		directions = new float[rows * columns];
+		cells = (rows - 1) * (columns - 1);
+		singular = new long[(cells + 63) / 64];
+		
+		lat = new double[columns];
+		nodeLon = new double[columns];
+		centreLon = new double[columns];
+		row = new double[columns];
+		for (j = 0; j < columns; j++) {
+			nodeLon[j] = -180 + j * step;
+			centreLon[j] = -180 + (j + 0.5) * step;
+		}
+		
+		/* Nodes, a row of the batch qibla at a time */
+		for (i = 0; i < rows; i++) {
+			fill(lat, -90 + i * step);
+			Jitl.getNorthQibla(lat, nodeLon, columns, row, null);
+			for (j = 0; j < columns; j++) {
+				directions[i * columns + j] = (float) row[j];
+			}
+		}
+		
+		/* Errors of the interpolation at the middle of the edges and at the
+		 * centre of the cells, each edge being shared by two cells */
+		south = new double[columns];
+		north = new double[columns];
+		west = new double[columns];
+		centre = new double[columns];
+		getRowErrors(0, lat, centreLon, row, south);
+		for (i = 0; i < rows - 1; i++) {
+			getRowErrors(i + 1, lat, centreLon, row, north);
+			
+			fill(lat, -90 + (i + 0.5) * step);
+			Jitl.getNorthQibla(lat, nodeLon, columns, row, null);
+			for (j = 0; j < columns; j++) {
+				west[j] = j < columns - 1 ? getError(i, j, 0, 0.5, row[j])
+						: getError(i, j - 1, 1, 0.5, row[j]);
+			}
+			Jitl.getNorthQibla(lat, centreLon, columns - 1, row, null);
+			for (j = 0; j < columns - 1; j++) {
+				centre[j] = getError(i, j, 0.5, 0.5, row[j]);
+			}
+			
+			for (j = 0; j < columns - 1; j++) {
+				check(i, j, Math.max(Math.max(centre[j], Math.max(south[j],
+						north[j])), Math.max(west[j], west[j + 1])), maxError);
+			}
+			swap = south;
+			south = north;
+			north = swap;
+		}
+	}
+	
+	/**
+	 * Qibla direction of a location
+	 * @param lat latitude in degrees
+	 * @param lon longitude in degrees
+	 * @return the direction in degrees from the north, as the decimal value
+	 * of getNorthQibla
+	 * @throws IllegalArgumentException if lat is not in -90..90
+	 */
+	public double getDirection(double lat, double lon) {
+		int i, j;
+		double y, x;
+		
+		checkLatitude(lat);
+		y = (lat + 90) / step;
+		x = (AstroLib.limitAngle(lon + 180)) / step;
+		i = Math.min((int) y, rows - 2);
+		j = Math.min((int) x, columns - 2);
+		if (isSingular(i, j)) {
+			return Jitl.getNorthQibla(new Location(lat, lon, 0, 0))
+					.getDecimalValue(Direction.NORTH);
+		}
+		return interpolate(i, j, x - j, y - i);
+	}
+	
+	/**
+	 * @param lat latitude in degrees
+	 * @param lon longitude in degrees
+	 * @return true if the location is in a singular cell, its direction
+	 * being computed by getNorthQibla
+	 * @throws IllegalArgumentException if lat is not in -90..90
+	 */
+	public boolean isSingular(double lat, double lon) {
+		int i, j;
+		
+		checkLatitude(lat);
+		i = Math.min((int) ((lat + 90) / step), rows - 2);
+		j = Math.min((int) (AstroLib.limitAngle(lon + 180) / step), columns - 2);
+		return isSingular(i, j);
+	}
+	
+	/**
+	 * @return the largest interpolation error, in degrees, measured in the
+	 * cells which are not singular
+	 */
+	public double getMaxError() {
+		return maxError;
+	}
+	
+	/**
+	 * @return number of singular cells
+	 */
+	public int getSingularCells() {
+		return singularCells;
+	}
+	
+	/**
+	 * @return distance between two nodes in degrees
+	 */
+	public double getStep() {
+		return step;
+	}
+	
+	/* Errors at the middle of the edges between the nodes of a row */
+	private void getRowErrors(int i, double[] lat, double[] lon, double[] row,
+			double[] errors) {
+		int j;
+		
+		fill(lat, -90 + i * step);
+		Jitl.getNorthQibla(lat, lon, columns - 1, row, null);
+		for (j = 0; j < columns - 1; j++) {
+			errors[j] = i < rows - 1 ? getError(i, j, 0.5, 0, row[j])
+					: getError(i - 1, j, 0.5, 1, row[j]);
+		}
+	}
+	
+	private double getError(int i, int j, double fx, double fy,
+			double direction) {
+		return Math.abs(wrap(interpolate(i, j, fx, fy) - direction));
+	}
+	
+	/* Flag a cell whose largest measured error is too high, or whose
+	 * corners point to too different directions */
+	private void check(int i, int j, double error, double maxError) {
+		int k, bit;
+		
+		k = i * columns + j;
+		if (error > maxError
+				|| Math.abs(wrap(directions[k + 1] - directions[k])) > MAX_SPREAD
+				|| Math.abs(wrap(directions[k + columns] - directions[k])) > MAX_SPREAD
+				|| Math.abs(wrap(directions[k + columns + 1] - directions[k])) > MAX_SPREAD) {
+			bit = i * (columns - 1) + j;
+			singular[bit >> 6] |= 1L << bit;
+			singularCells++;
+		} else if (error > this.maxError) {
+			this.maxError = error;
+		}
+	}
+	
+	/* Bilinear interpolation in a cell, the directions of the corners being
+	 * taken relative to the south west one so that the -180/180 cut does
+	 * not get in between */
+	private double interpolate(int i, int j, double fx, double fy) {
+		int k;
+		double d00, d10, d01, d11;
+		
+		k = i * columns + j;
+		d00 = directions[k];
+		d10 = wrap(directions[k + 1] - d00);
+		d01 = wrap(directions[k + columns] - d00);
+		d11 = wrap(directions[k + columns + 1] - d00);
+		return wrap(d00 + fx * d10 + fy * d01 + fx * fy * (d11 - d10 - d01));
+	}
+	
+	private boolean isSingular(int i, int j) {
+		int bit = i * (columns - 1) + j;
+		
+		return (singular[bit >> 6] & (1L << bit)) != 0;
+	}
+	
+	private static void checkLatitude(double lat) {
+		if (!(lat >= -90 && lat <= 90))
+			throw new IllegalArgumentException("latitude " + lat
+					+ " is not in -90..90");
+	}
+	
+	/* Bring an angle difference into -180..180 */
+	private static double wrap(double a) {
+		if (a > 180)
+			return a - 360;
+		if (a <= -180)
+			return a + 360;
+		return a;
+	}
+	
+	private static void fill(double[] a, double v) {
+		int i;
+		
+		for (i = 0; i < a.length; i++) {
+			a[i] = v;
+		}
+	}
+}
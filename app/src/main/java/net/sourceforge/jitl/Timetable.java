@@ -0,0 +1,155 @@
+package net.sourceforge.jitl;
+
+import net.sourceforge.jitl.astro.SimpleDate;
+
+/**
+ * Prayer times of consecutive days stored in primitive arrays.
+ *
+ * Each time is kept as seconds since midnight in an int array ordered by
+ * prayer then day (all the fajr times, then all the shuruq times...), so
+ * that scanning one prayer over the days reads contiguous memory. The
+ * extreme switches are kept in a bitset with the same order. A year takes
+ * about 9 KB instead of the 2190 Prayer objects of DayPrayers.
+ * @see Jitl#getTimetable(Timetable)
+ */
+public class Timetable {
+
+	/**
+	 * number of times of a day (fajr, shuruq, thuhr, assr, maghrib, ishaa)
+	 */
+	public static final int PRAYERS = 6;
+
+	/**
+	 * seconds value of a time which cannot be computed at the location
+	 */
+	public static final int INVALID = -1;
+
+	private final SimpleDate start;
+
+	private final int days;
+
+	private final int seconds[];
+
+	private final long extremes[];
+
+	/**
+	 * Creates an empty timetable
+	 * @param start date of the first day
+	 * @param days number of days
+	 */
+	public Timetable(SimpleDate start, int days) {
+		this.start = start.copy();
+		this.days = days;
+		this.seconds = new int[PRAYERS * days];
+		this.extremes = new long[(PRAYERS * days + 63) / 64];
+	}
+
+	/**
+	 * @return a copy of the date of the first day
+	 */
+	public SimpleDate getStart() {
+		return start.copy();
+	}
+
+	/**
+	 * @return number of days
+	 */
+	public int getDays() {
+		return days;
+	}
+
+	/**
+	 * Time of a prayer
+	 * @param day index of the day, 0 being the start date
+	 * @param prayer index of the prayer as in DayPrayers.getPrayers()
+	 * @return seconds since midnight, INVALID if the time cannot be
+	 * computed
+	 */
+	public int getSeconds(int day, int prayer) {
+		return seconds[prayer * days + day];
+	}
+
+	/**
+	 * Extreme switch of a prayer
+	 * @param day index of the day, 0 being the start date
+	 * @param prayer index of the prayer as in DayPrayers.getPrayers()
+	 * @return true if the time was computed through an extreme latitude
+	 * method
+	 * @see Prayer#isExtreme()
+	 */
+	public boolean isExtreme(int day, int prayer) {
+		int bit = prayer * days + day;
+
+		return (extremes[bit >> 6] & (1L << bit)) != 0;
+	}
+
+	/**
+	 * Fill a Prayer object with a time of the timetable
+	 * @param day index of the day, 0 being the start date
+	 * @param prayer index of the prayer as in DayPrayers.getPrayers()
+	 * @param pt object receiving the time, hour and minute are 99 if the time
+	 * cannot be computed
+	 */
+	public void getPrayer(int day, int prayer, Prayer pt) {
+		int s = getSeconds(day, prayer);
+
+		if (s == INVALID) {
+			pt.setHour(99);
+			pt.setMinute(99);
+			pt.setSecond(0);
+		} else {
+			pt.setHour(s / 3600);
+			pt.setMinute(s / 60 % 60);
+			pt.setSecond(s % 60);
+		}
+		pt.setExtreme(isExtreme(day, prayer));
+	}
+
+	/**
+	 * Copy the times of one prayer for consecutive days
+	 * @param prayer index of the prayer as in DayPrayers.getPrayers()
+	 * @param fromDay index of the first day copied
+	 * @param dest array receiving the seconds since midnight
+	 * @param destPos first index written in dest
+	 * @param count number of days copied
+	 */
+	public void copySeconds(int prayer, int fromDay, int[] dest, int destPos,
+			int count) {
+		System.arraycopy(seconds, prayer * days + fromDay, dest, destPos, count);
+	}
+
+	/**
+	 * Copy the times of every prayer, in the timetable order: the days of
+	 * fajr, then the days of shuruq and so on
+	 * @param dest array receiving PRAYERS * getDays() seconds since midnight
+	 * @param destPos first index written in dest
+	 */
+	public void copySeconds(int[] dest, int destPos) {
+		System.arraycopy(seconds, 0, dest, destPos, seconds.length);
+	}
+
+	/* Store a time computed by the engine */
+	void set(int day, int prayer, Prayer pt) {
+		if (pt.getHour() == 99) {
+			setSeconds(day, prayer, INVALID, pt.isExtreme());
+		} else {
+			setSeconds(day, prayer, pt.getHour() * 3600 + pt.getMinute() * 60
+					+ pt.getSecond(), pt.isExtreme());
+		}
+	}
+
+	/* The tasks of a parallel timetable each write their own days, but
+	 * the extreme bits of two tasks can share a word. Only the bits which
+	 * change are written, under a lock, so that the extreme times, which are
+	 * rare, are the only ones paying for it */
+	void setSeconds(int day, int prayer, int s, boolean extreme) {
+		int bit = prayer * days + day;
+
+		seconds[bit] = s;
+		if (extreme != ((extremes[bit >> 6] & (1L << bit)) != 0)) {
+			synchronized (extremes) {
+				extremes[bit >> 6] ^= 1L << bit;
+			}
+		}
+	}
+}
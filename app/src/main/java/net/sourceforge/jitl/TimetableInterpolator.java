@@ -0,0 +1,229 @@
+package net.sourceforge.jitl;
+
+import net.sourceforge.jitl.astro.SimpleDate;
+import net.sourceforge.jitl.astro.Utils;
+
+/**
+ * Fills a timetable by computing anchor days and interpolating the days in
+ * between.
+ *
+ * Anchors are computed every <code>step</code> days without rounding, and
+ * each day between two anchors is given by the cubic through the four
+ * nearest anchors. The rounding of the method is applied afterwards, the
+ * same way base6hm does. The error of each interval is estimated by the
+ * difference with the cubics through the anchors shifted by one on each
+ * side, and for one interval out of four the middle day is computed
+ * exactly to check the interpolation; if one of them is too large,
+ * or if an anchor around the interval has an invalid or extreme time, or a
+ * time crossing midnight, the whole interval is computed exactly. So are
+ * the intervals around the day the right ascension of the sun goes back
+ * to 0 (the march equinox), where the three day window of the engine
+ * makes the times jump by a few seconds.
+ */
+class TimetableInterpolator {
+	
+	private static final int HALF_DAY = 43200;
+	
+	/* One interval out of CHECKED has its middle day computed exactly */
+	private static final int CHECKED = 4;
+	
+	private final Jitl jitl;
+	
+	private final Method method;
+	
+	/* method without rounding, for the anchors and the checks */
+	private final Method smooth;
+	
+	private final double gmtDiff;
+	
+	private final DayPrayers scratch = new DayPrayers();
+	
+	private final DayCouple dc = new DayCouple(0, 0);
+	
+	private final SimpleDate date = new SimpleDate(1, 1, 1970);
+	
+	private long startDay;
+	
+	TimetableInterpolator(Jitl jitl, Method method, double gmtDiff) {
+		this.jitl = jitl;
+		this.method = method;
+		this.smooth = method.copy();
+		this.smooth.setRound(Rounding.NONE);
+		this.gmtDiff = gmtDiff;
+	}
+	
+	/**
+	 * @return the largest error of the checked days in seconds
+	 */
+	int fill(Timetable table, int step, int maxError) {
+		int i, j, k, n, d, first, end, err, worst;
+		int values[][];
+		double ra[];
+		boolean bad[];
+		double t;
+		
+		startDay = Jitl.getEpochDay(table.getStart());
+		if (step < 2 || table.getDays() < 2 * step) {
+			exact(table, 0, table.getDays());
+			return 0;
+		}
+		
+		/* anchor j is day (j - 2) * step, from two anchors before the table
+		 * to two anchors after it */
+		n = (table.getDays() - 1) / step + 6;
+		values = new int[Timetable.PRAYERS][n];
+		bad = new boolean[n];
+		ra = new double[n];
+		for (j = 0; j < n; j++) {
+			bad[j] = !compute((j - 2) * step, values, j);
+			ra[j] = jitl.getDayAstro().getRa()[1];
+		}
+		
+		worst = 0;
+		for (j = 2; j < n - 3; j++) {
+			first = (j - 2) * step;
+			end = Math.min(first + step, table.getDays());
+			if (first >= end) {
+				break;
+			}
+			
+			err = check(values, bad, ra, j, step, maxError);
+			if (err >= 0) {
+				worst = Math.max(worst, err);
+			}
+			if (err < 0 || err > maxError) {
+				exact(table, first, end);
+				continue;
+			}
+			
+			for (d = first; d < end; d++) {
+				t = (double) (d - first) / step;
+				for (k = 0; k < Timetable.PRAYERS; k++) {
+					i = (int) Math.round(interpolate(values[k], j, t));
+					table.setSeconds(d, k, round(i, k), false);
+				}
+			}
+		}
+		return worst;
+	}
+	
+	/* Interpolation error at the middle of the interval starting at anchor
+	 * j (0 if the day is not checked), -1 if the interval cannot be
+	 * interpolated */
+	private int check(int[][] values, boolean[] bad, double[] ra, int j,
+			int step, int maxError) {
+		int i, k, err;
+		double t, c;
+		
+		for (i = j - 2; i <= j + 3; i++) {
+			if (bad[i] || (i > j - 2 && ra[i] < ra[i - 1])) {
+				return -1;
+			}
+		}
+		for (k = 0; k < Timetable.PRAYERS; k++) {
+			for (i = j - 2; i < j + 3; i++) {
+				if (Math.abs(values[k][i + 1] - values[k][i]) > HALF_DAY) {
+					return -1;
+				}
+			}
+			for (i = 1; i < step; i++) {
+				t = (double) i / step;
+				c = interpolate(values[k], j, t);
+				if (Math.abs(c - interpolate(values[k], j - 1, t + 1)) > maxError
+						|| Math.abs(c - interpolate(values[k], j + 1, t - 1)) > maxError) {
+					return -1;
+				}
+			}
+		}
+		
+		if (j % CHECKED != 0) {
+			return 0;
+		}
+		if (!compute((j - 2) * step + step / 2, null, 0)) {
+			return -1;
+		}
+		t = (double) (step / 2) / step;
+		err = 0;
+		for (k = 0; k < Timetable.PRAYERS; k++) {
+			err = Math.max(err, (int) Math.abs(Math.round(interpolate(
+					values[k], j, t)) - seconds(scratch.getPrayers()[k])));
+		}
+		return err;
+	}
+	
+	/* Cubic through the anchors j - 1 to j + 2, at t step between anchors
+	 * j and j + 1 */
+	private static double interpolate(int[] v, int j, double t) {
+		return -t * (t - 1) * (t - 2) / 6 * v[j - 1]
+				+ (t + 1) * (t - 1) * (t - 2) / 2 * v[j]
+				- (t + 1) * t * (t - 2) / 2 * v[j + 1]
+				+ (t + 1) * t * (t - 1) / 6 * v[j + 2];
+	}
+	
+	/* Compute a day without rounding into scratch, and into values[][j] if
+	 * values is not null. Returns false if a time is invalid or extreme, or
+	 * if the window of the day crosses 0 hour of right ascension */
+	private boolean compute(int day, int[][] values, int j) {
+		int k;
+		Prayer pt;
+		double ra[];
+		boolean smoothDay;
+		
+		Jitl.setEpochDay(date, startDay + day);
+		jitl.getPrayerTimesByDay(smooth, Jitl.getDayInfo(date, gmtDiff, dc),
+				scratch, PrayerTime.FAJR);
+		ra = jitl.getDayAstro().getRa();
+		smoothDay = ra[0] < ra[1] && ra[1] < ra[2];
+		for (k = 0; k < Timetable.PRAYERS; k++) {
+			pt = scratch.getPrayers()[k];
+			if (pt.getHour() == 99 || pt.isExtreme()) {
+				smoothDay = false;
+			} else if (values != null) {
+				values[k][j] = seconds(pt);
+			}
+		}
+		return smoothDay;
+	}
+	
+	/* Compute days first to end (exclusive) with the method */
+	private void exact(Timetable table, int first, int end) {
+		int d, k;
+		
+		Jitl.setEpochDay(date, startDay + first);
+		Jitl.getDayInfo(date, gmtDiff, dc);
+		for (d = first; d < end; d++) {
+			jitl.getPrayerTimesByDay(method, dc, scratch, PrayerTime.FAJR);
+			for (k = 0; k < Timetable.PRAYERS; k++) {
+				table.set(d, k, scratch.getPrayers()[k]);
+			}
+			Jitl.nextDay(date, dc);
+		}
+	}
+	
+	private static int seconds(Prayer pt) {
+		return pt.getHour() * 3600 + pt.getMinute() * 60 + pt.getSecond();
+	}
+	
+	/* Rounding of base6hm applied to a time without rounding. The seconds
+	 * compared to the thresholds are the same since base6hm truncates them */
+	private int round(int s, int prayer) {
+		int sec;
+		Rounding round = method.getRound();
+		
+		s = ((s % 86400) + 86400) % 86400;
+		sec = s % 60;
+		if (round == Rounding.NONE) {
+			return s;
+		}
+		s -= sec;
+		if (round == Rounding.NORMAL) {
+			if (sec >= Utils.DEFAULT_ROUND_SEC)
+				s += 60;
+		} else if (prayer != 1) {
+			if (sec >= (round == Rounding.SPECIAL ? Utils.DEFAULT_ROUND_SEC
+					: Utils.AGGRESSIVE_ROUND_SEC))
+				s += 60;
+		}
+		return s % 86400;
+	}
+}
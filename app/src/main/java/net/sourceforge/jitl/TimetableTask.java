@@ -0,0 +1,99 @@
+package net.sourceforge.jitl;
+
+import java.util.concurrent.RecursiveAction;
+
+import net.sourceforge.jitl.astro.Location;
+import net.sourceforge.jitl.astro.SimpleDate;
+import net.sourceforge.jitl.astro.SolarEphemeris;
+
+/**
+ * Fork/join computation of a timetable.
+ *
+ * The range is cut at the first day of each month. A task covering a
+ * single month computes it with its own Jitl, so the days of the month
+ * share one astro window which is only computed in full for the first
+ * day, and writes them straight into the timetable shared by all the
+ * tasks. Larger tasks fork their two halves, nothing is left to merge.
+ */
+class TimetableTask extends RecursiveAction {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final Location loc;
+	
+	private final Method method;
+	
+	private final SolarEphemeris ephemeris;
+	
+	/* Timetable of the whole range, starting at bounds[0] */
+	private final Timetable table;
+	
+	/* Epoch days of the first day of each month chunk, followed by the
+	 * day after the range */
+	private final long bounds[];
+	
+	/* Chunks first (inclusive) to last (exclusive) of bounds */
+	private final int first, last;
+	
+	TimetableTask(Location loc, Method method, SolarEphemeris ephemeris,
+			Timetable table, long[] bounds, int first, int last) {
+		this.loc = loc;
+		this.method = method;
+		this.ephemeris = ephemeris;
+		this.table = table;
+		this.bounds = bounds;
+		this.first = first;
+		this.last = last;
+	}
+	
+	protected void compute() {
+		int mid;
+		TimetableTask left, right;
+		
+		if (last - first == 1) {
+			Jitl jitl = new Jitl(loc, method);
+			jitl.setEphemeris(ephemeris);
+			jitl.getTimetableDays(table, (int) (bounds[first] - bounds[0]),
+					(int) (bounds[last] - bounds[first]));
+			return;
+		}
+		
+		mid = (first + last) / 2;
+		left = new TimetableTask(loc, method, ephemeris, table, bounds, first,
+				mid);
+		right = new TimetableTask(loc, method, ephemeris, table, bounds, mid,
+				last);
+		right.fork();
+		left.compute();
+		right.join();
+	}
+	
+	/**
+	 * Cut a range of days at the first day of each month
+	 * @return the epoch days of the first day of each chunk, followed by
+	 * the day after the range
+	 */
+	static long[] getMonthBounds(SimpleDate from, SimpleDate to) {
+		int i, chunks, month, year;
+		long end;
+		long bounds[];
+		
+		end = Jitl.getEpochDay(from) + Jitl.getDayCount(from, to);
+		chunks = Math.max(1, (to.getYear() - from.getYear()) * 12
+				+ to.getMonth() - from.getMonth() + 1);
+		bounds = new long[chunks + 1];
+		bounds[0] = Jitl.getEpochDay(from);
+		
+		month = from.getMonth();
+		year = from.getYear();
+		for (i = 1; i < chunks; i++) {
+			if (++month > 12) {
+				month = 1;
+				year++;
+			}
+			bounds[i] = Jitl.getEpochDay(new SimpleDate(1, month, year));
+		}
+		bounds[chunks] = Math.max(end, bounds[0]);
+		return bounds;
+	}
+}
@@ -11,6 +11,14 @@ public class AstroDay {
 	
 	private double rsum;
 	
+	/* Scratch tables of AstroLib.computeAstroDay holding the cosine and sine
+	 * of the multiples of the nutation arguments */
+	final double nutCos[] = new double[AstroLib.NUT_ARGS
+	                                   * AstroLib.NUT_MULTIPLES];
+	
+	final double nutSin[] = new double[AstroLib.NUT_ARGS
+	                                   * AstroLib.NUT_MULTIPLES];
+	
 	public double getDec() {
 		return dec;
 	}
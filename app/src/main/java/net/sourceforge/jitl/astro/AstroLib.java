@@ -8,6 +8,17 @@ package net.sourceforge.jitl.astro;
  *
  */
 public class AstroLib {
+	
+	/**
+	 * The full series of this class, shared between all callers through
+	 * the EphemerisCache. This is the default ephemeris.
+	 */
+	public static final SolarEphemeris VSOP87 = new SolarEphemeris() {
+		public void computeAstroDay(double julianDay, AstroDay astroday) {
+			EphemerisCache.getAstroDay(julianDay, astroday);
+		}
+	};
+	
 	static final double L0[][] = { { 175347046, 0, 0 },
 		{ 3341656, 4.6692568, 6283.07585 }, { 34894, 4.6261, 12566.1517 },
 		{ 3497, 2.7441, 5753.3849 }, { 3418, 2.8289, 3.5231 },
@@ -167,11 +178,71 @@ public class AstroLib {
 		{ 0, -1, 1, 2, 2 }, { 2, -1, -1, 2, 2 }, { 0, 0, 3, 2, 2 },
 		{ 2, -1, 0, 2, 2 } };
 	
+	/* The nutation series rearranged for computeAstroDay. The argument of a
+	 * row is an integer combination of the five fundamental arguments X0..X4
+	 * so its sine and cosine are built by angle addition from a per-day table
+	 * holding the cosine and sine of every multiple of X0..X4 (from
+	 * NUT_MIN_MULTIPLE to NUT_MAX_MULTIPLE). NUT_TERM lists, row after row,
+	 * the table index of every non zero multiple of SINCOEFF and NUT_ROW gives
+	 * the first term of each row. */
+	static final int NUT_ARGS = 5;
+	
+	static final int NUT_MIN_MULTIPLE = -2;
+	
+	static final int NUT_MAX_MULTIPLE = 3;
+	
+	static final int NUT_MULTIPLES = NUT_MAX_MULTIPLE - NUT_MIN_MULTIPLE + 1;
+	
+	static final int NUT_ROW[] = new int[SINCOEFF.length + 1];
+	
+	static final int NUT_TERM[];
+	
+	static {
+		int i, j, n = 0;
+		
+		for (i = 0; i < SINCOEFF.length; i++)
+			for (j = 0; j < NUT_ARGS; j++)
+				if (SINCOEFF[i][j] != 0)
+					n++;
+		
+		NUT_TERM = new int[n];
+		n = 0;
+		for (i = 0; i < SINCOEFF.length; i++) {
+			NUT_ROW[i] = n;
+			for (j = 0; j < NUT_ARGS; j++)
+				if (SINCOEFF[i][j] != 0)
+					NUT_TERM[n++] = j * NUT_MULTIPLES + SINCOEFF[i][j]
+					                                          - NUT_MIN_MULTIPLE;
+		}
+		NUT_ROW[SINCOEFF.length] = n;
+	}
+	
 	public static double getRefraction(final Location loc, double sunAlt) {
-		double part1, part2;
+		return getRefraction((loc.getPressure() / 1010.0)
+				* (283 / (273 + loc.getTemperature())), sunAlt);
+	}
+	
+	/**
+	 * Atmospheric refraction at a given altitude of the sun
+	 * @param ctx terms of the location
+	 * @param sunAlt altitude of the sun in degrees
+	 * @return the refraction in degrees
+	 */
+	public static double getRefraction(final LocationContext ctx,
+			double sunAlt) {
+		return getRefraction(ctx.getRefraction(), sunAlt);
+	}
+	
+	/**
+	 * Atmospheric refraction at a given altitude of the sun
+	 * @param part1 pressure and temperature factor of the location, see
+	 * LocationContext.getRefraction
+	 * @param sunAlt altitude of the sun in degrees
+	 * @return the refraction in degrees
+	 */
+	public static double getRefraction(double part1, double sunAlt) {
+		double part2;
 		
-		part1 = (loc.getPressure() / 1010.0)
-		* (283 / (273 + loc.getTemperature()));
 		part2 = 1.02 / (Utils.RAD_TO_DEG(Math.tan(Utils.DEG_TO_RAD(sunAlt + (10.3/(sunAlt + 5.11))))) + 0.0019279);
 		return (part1 * part2) / 60.0;
 	}
@@ -205,7 +276,63 @@ public class AstroLib {
 	
 	public static void getAstroValuesByDay(double julianDay,
 			final Location loc, Astro astro, Astro topAstro) {
-		AstroDay ad = new AstroDay();
+		getAstroValuesByDay(julianDay, loc, astro, topAstro, new AstroDay());
+	}
+	
+	/**
+	 * Fill topAstro with the topocentric values of a julian day and the two
+	 * days around it. Values already held by the astro cache are shifted
+	 * instead of being computed again.
+	 * @param julianDay the julian day
+	 * @param loc the location
+	 * @param astro cache holding the values of the last computed day
+	 * @param topAstro receives the topocentric values
+	 * @param ad scratch object, reused to avoid an allocation per call
+	 */
+	public static void getAstroValuesByDay(double julianDay,
+			final Location loc, Astro astro, Astro topAstro, AstroDay ad) {
+		getAstroValuesByDay(julianDay, loc, astro, topAstro, ad, VSOP87);
+	}
+	
+	/**
+	 * Same as getAstroValuesByDay(double, Location, Astro, Astro, AstroDay)
+	 * but reading the solar values from the given ephemeris. The astro
+	 * cache must only be used with a single ephemeris.
+	 * @param julianDay the julian day
+	 * @param loc the location
+	 * @param astro cache holding the values of the last computed day
+	 * @param topAstro receives the topocentric values
+	 * @param ad scratch object, reused to avoid an allocation per call
+	 * @param ephemeris source of the solar values
+	 */
+	public static void getAstroValuesByDay(double julianDay,
+			final Location loc, Astro astro, Astro topAstro, AstroDay ad,
+			SolarEphemeris ephemeris) {
+		loadAstroDays(julianDay, astro, ad, ephemeris);
+		computeTopAstro(loc, astro, topAstro);
+	}
+	
+	/**
+	 * Same as getAstroValuesByDay(double, Location, Astro, Astro, AstroDay,
+	 * SolarEphemeris) using the precomputed terms of the location
+	 * @param julianDay the julian day
+	 * @param ctx terms of the location
+	 * @param astro cache holding the values of the last computed day
+	 * @param topAstro receives the topocentric values
+	 * @param ad scratch object, reused to avoid an allocation per call
+	 * @param ephemeris source of the solar values
+	 */
+	public static void getAstroValuesByDay(double julianDay,
+			final LocationContext ctx, Astro astro, Astro topAstro,
+			AstroDay ad, SolarEphemeris ephemeris) {
+		loadAstroDays(julianDay, astro, ad, ephemeris);
+		computeTopAstro(ctx, astro, topAstro);
+	}
+	
+	/* Fill the astro cache with the geocentric values of a julian day and
+	 * the two days around it, shifting the values it already holds */
+	private static void loadAstroDays(double julianDay, Astro astro,
+			AstroDay ad, SolarEphemeris ephemeris) {
 		
 		if (astro.getJd() == julianDay - 1) {
 			astro.getRa()[0] = astro.getRa()[1];
@@ -219,7 +346,7 @@ public class AstroLib {
 			astro.getDra()[1] = astro.getDra()[2];
 			astro.getRsum()[0] = astro.getRsum()[1];
 			astro.getRsum()[1] = astro.getRsum()[2];
-			computeAstroDay(julianDay + 1, ad);
+			ephemeris.computeAstroDay(julianDay + 1, ad);
 			astro.getRa()[2] = ad.getRa();
 			astro.getDec()[2] = ad.getDec();
 			astro.getSid()[2] = ad.getSidtime();
@@ -237,26 +364,26 @@ public class AstroLib {
 			astro.getDra()[1] = astro.getDra()[0];
 			astro.getRsum()[2] = astro.getRsum()[1];
 			astro.getRsum()[1] = astro.getRsum()[0];
-			computeAstroDay(julianDay - 1, ad);
+			ephemeris.computeAstroDay(julianDay - 1, ad);
 			astro.getRa()[0] = ad.getRa();
 			astro.getDec()[0] = ad.getDec();
 			astro.getSid()[0] = ad.getSidtime();
 			astro.getDra()[0] = ad.getDra();
 			astro.getRsum()[0] = ad.getRsum();
 		} else if (astro.getJd() != julianDay) {
-			computeAstroDay(julianDay - 1, ad);
+			ephemeris.computeAstroDay(julianDay - 1, ad);
 			astro.getRa()[0] = ad.getRa();
 			astro.getDec()[0] = ad.getDec();
 			astro.getSid()[0] = ad.getSidtime();
 			astro.getDra()[0] = ad.getDra();
 			astro.getRsum()[0] = ad.getRsum();
-			computeAstroDay(julianDay, ad);
+			ephemeris.computeAstroDay(julianDay, ad);
 			astro.getRa()[1] = ad.getRa();
 			astro.getDec()[1] = ad.getDec();
 			astro.getSid()[1] = ad.getSidtime();
 			astro.getDra()[1] = ad.getDra();
 			astro.getRsum()[1] = ad.getRsum();
-			computeAstroDay(julianDay + 1, ad);
+			ephemeris.computeAstroDay(julianDay + 1, ad);
 			astro.getRa()[2] = ad.getRa();
 			astro.getDec()[2] = ad.getDec();
 			astro.getSid()[2] = ad.getSidtime();
@@ -265,13 +392,26 @@ public class AstroLib {
 		}
 		
 		astro.setJd(julianDay);
-		computeTopAstro(loc, astro, topAstro);
 		
 	}
 	
+	/**
+	 * Compute the geocentric values of the sun for a julian day.
+	 * 
+	 * The polynomials are evaluated in Horner form and the 63 nutation
+	 * terms are obtained by angle addition from the sine and cosine of the
+	 * five fundamental arguments (see NUT_TERM), which only needs five sin
+	 * and cos calls per day. Between years 1900 and 2100 the results agree
+	 * with a direct evaluation of every term within 1e-10 degrees for ra,
+	 * 2e-12 radians for dec (1e-10 degrees), 5e-9 degrees for sidtime (the
+	 * rounding unit of its polynomial) and 1e-15 AU for rsum.
+	 * @param JD the julian day
+	 * @param astroday receives ra, dec (radians), sidtime and rsum. Its
+	 * scratch tables are used for the nutation terms
+	 */
 	public static void computeAstroDay(double JD, AstroDay astroday) {
 		
-		int i = 0;
+		int i = 0, n;
 		double R, Gg, G;
 		
 		double tL, L;
@@ -283,19 +423,19 @@ public class AstroLib {
 		
 		double RAn, RAd, RA, DEC;
 		
+		double sinE, cosE, sinGg, cosGg;
+		
 		double B0sum = 0, B1sum = 0;
 		double R0sum = 0, R1sum = 0, R2sum = 0, R3sum = 0, R4sum = 0;
 		double L0sum = 0, L1sum = 0, L2sum = 0, L3sum = 0, L4sum = 0, L5sum = 0;
 		
-		double xsum = 0, psi = 0, epsilon = 0;
+		double psi = 0, epsilon = 0;
 		double deltaPsi, deltaEps;
+		double xcos, xsin, tcos;
+		double nutCos[] = astroday.nutCos, nutSin[] = astroday.nutSin;
 		
 		double JC = (JD - 2451545) / 36525.0;
 		double JM = JC / 10.0;
-		double JM2 = Math.pow(JM, 2);
-		double JM3 = Math.pow(JM, 3);
-		double JM4 = Math.pow(JM, 4);
-		double JM5 = Math.pow(JM, 5);
 		
 		for (i = 0; i < 64; i++)
 			L0sum += L0[i][0] * Math.cos(L0[i][1] + L0[i][2] * JM);
@@ -309,9 +449,8 @@ public class AstroLib {
 			L4sum += L4[i][0] * Math.cos(L4[i][1] + L4[i][2] * JM);
 		L5sum = L5[0][0] * Math.cos(L5[0][1] + L5[0][2] * JM);
 		
-		tL = (L0sum + (L1sum * JM) + (L2sum * JM2) + (L3sum * JM3)
-				+ (L4sum * JM4) + (L5sum * JM5))
-				/ Math.pow(10, 8);
+		tL = (L0sum + JM * (L1sum + JM * (L2sum + JM * (L3sum + JM
+				* (L4sum + JM * L5sum))))) / 1e8;
 		
 		L = limitAngle(Utils.RAD_TO_DEG(tL));
 		
@@ -320,7 +459,7 @@ public class AstroLib {
 		for (i = 0; i < 2; i++)
 			B1sum += B1[i][0] * Math.cos(B1[i][1] + B1[i][2] * JM);
 		
-		tB = (B0sum + (B1sum * JM)) / Math.pow(10, 8);
+		tB = (B0sum + (B1sum * JM)) / 1e8;
 		B = Utils.RAD_TO_DEG(tB);
 		
 		for (i = 0; i < 40; i++)
@@ -334,62 +473,67 @@ public class AstroLib {
 		
 		R4sum = R4[0] * Math.cos(R4[1] + R4[2] * JM);
 		
-		R = (R0sum + (R1sum * JM) + (R2sum * JM2) + (R3sum * JM3) + (R4sum * JM4))
-		/ Math.pow(10, 8);
+		R = (R0sum + JM * (R1sum + JM * (R2sum + JM * (R3sum + JM * R4sum))))
+		/ 1e8;
 		
 		G = limitAngle((L + 180));
 		Gg = -B;
 		
-		X0 = 297.85036 + (445267.111480 * JC) - (0.0019142 * Math.pow(JC, 2))
-		+ Math.pow(JC, 3) / 189474.0;
-		X1 = 357.52772 + (35999.050340 * JC) - (0.0001603 * Math.pow(JC, 2))
-		- Math.pow(JC, 3) / 300000.0;
-		X2 = 134.96298 + (477198.867398 * JC) + (0.0086972 * Math.pow(JC, 2))
-		+ Math.pow(JC, 3) / 56250.0;
-		X3 = 93.27191 + (483202.017538 * JC) - (0.0036825 * Math.pow(JC, 2))
-		+ Math.pow(JC, 3) / 327270.0;
-		X4 = 125.04452 - (1934.136261 * JC) + (0.0020708 * Math.pow(JC, 2))
-		+ Math.pow(JC, 3) / 450000.0;
+		X0 = 297.85036 + JC
+		* (445267.111480 + JC * (-0.0019142 + JC / 189474.0));
+		X1 = 357.52772 + JC
+		* (35999.050340 + JC * (-0.0001603 - JC / 300000.0));
+		X2 = 134.96298 + JC
+		* (477198.867398 + JC * (0.0086972 + JC / 56250.0));
+		X3 = 93.27191 + JC
+		* (483202.017538 + JC * (-0.0036825 + JC / 327270.0));
+		X4 = 125.04452 + JC
+		* (-1934.136261 + JC * (0.0020708 + JC / 450000.0));
+		
+		nutationMultiples(0, X0, nutCos, nutSin);
+		nutationMultiples(1, X1, nutCos, nutSin);
+		nutationMultiples(2, X2, nutCos, nutSin);
+		nutationMultiples(3, X3, nutCos, nutSin);
+		nutationMultiples(4, X4, nutCos, nutSin);
 		
 		for (i = 0; i < 63; i++) {
-			xsum += X0 * SINCOEFF[i][0];
-			xsum += X1 * SINCOEFF[i][1];
-			xsum += X2 * SINCOEFF[i][2];
-			xsum += X3 * SINCOEFF[i][3];
-			xsum += X4 * SINCOEFF[i][4];
-			psi += (PE[i][0] + JC * PE[i][1])
-			* Math.sin(Utils.DEG_TO_RAD(xsum));
-			epsilon += (PE[i][2] + JC * PE[i][3])
-			* Math.cos(Utils.DEG_TO_RAD(xsum));
-			xsum = 0;
+			xcos = 1;
+			xsin = 0;
+			for (n = NUT_ROW[i]; n < NUT_ROW[i + 1]; n++) {
+				tcos = xcos * nutCos[NUT_TERM[n]] - xsin * nutSin[NUT_TERM[n]];
+				xsin = xsin * nutCos[NUT_TERM[n]] + xcos * nutSin[NUT_TERM[n]];
+				xcos = tcos;
+			}
+			psi += (PE[i][0] + JC * PE[i][1]) * xsin;
+			epsilon += (PE[i][2] + JC * PE[i][3]) * xcos;
 		}
 		
 		deltaPsi = psi / 36000000.0;
 		deltaEps = epsilon / 36000000.0;
 		
 		U = JM / 10.0;
-		E0 = 84381.448 - 4680.93 * U - 1.55 * Math.pow(U, 2) + 1999.25
-		* Math.pow(U, 3) - 51.38 * Math.pow(U, 4) - 249.67
-		* Math.pow(U, 5) - 39.05 * Math.pow(U, 6) + 7.12
-		* Math.pow(U, 7) + 27.87 * Math.pow(U, 8) + 5.79
-		* Math.pow(U, 9) + 2.45 * Math.pow(U, 10);
+		E0 = 84381.448 + U * (-4680.93 + U * (-1.55 + U * (1999.25 + U
+				* (-51.38 + U * (-249.67 + U * (-39.05 + U * (7.12 + U
+						* (27.87 + U * (5.79 + U * 2.45)))))))));
 		E = E0 / 3600.0 + deltaEps;
 		lamda = G + deltaPsi + (-20.4898 / (3600.0 * R));
 		
-		V0 = 280.46061837 + 360.98564736629 * (JD - 2451545) + 0.000387933
-		* Math.pow(JC, 2) - Math.pow(JC, 3) / 38710000.0;
-		V = limitAngle(V0) + deltaPsi * Math.cos(Utils.DEG_TO_RAD(E));
+		V0 = 280.46061837 + 360.98564736629 * (JD - 2451545) + JC * JC
+		* (0.000387933 - JC / 38710000.0);
+		
+		sinE = Math.sin(Utils.DEG_TO_RAD(E));
+		cosE = Math.cos(Utils.DEG_TO_RAD(E));
+		sinGg = Math.sin(Utils.DEG_TO_RAD(Gg));
+		cosGg = Math.cos(Utils.DEG_TO_RAD(Gg));
+		
+		V = limitAngle(V0) + deltaPsi * cosE;
 		
-		RAn = Math.sin(Utils.DEG_TO_RAD(lamda)) * Math.cos(Utils.DEG_TO_RAD(E))
-		- Math.tan(Utils.DEG_TO_RAD(Gg))
-		* Math.sin(Utils.DEG_TO_RAD(E));
+		RAn = Math.sin(Utils.DEG_TO_RAD(lamda)) * cosE
+		- (sinGg / cosGg) * sinE;
 		RAd = Math.cos(Utils.DEG_TO_RAD(lamda));
 		RA = limitAngle(Utils.RAD_TO_DEG(Math.atan2(RAn, RAd)));
 		
-		DEC = Math.asin(Math.sin(Utils.DEG_TO_RAD(Gg))
-				* Math.cos(Utils.DEG_TO_RAD(E))
-				+ Math.cos(Utils.DEG_TO_RAD(Gg))
-				* Math.sin(Utils.DEG_TO_RAD(E))
+		DEC = Math.asin(sinGg * cosE + cosGg * sinE
 				* Math.sin(Utils.DEG_TO_RAD(lamda)));
 		
 		astroday.setRa(RA);
@@ -400,40 +544,87 @@ public class AstroLib {
 		
 	}
 	
+	/* Fill the nutation tables with the cosine and sine of every multiple
+	 * of the fundamental argument arg (in degrees) */
+	static void nutationMultiples(int arg, double X, double nutCos[],
+			double nutSin[]) {
+		int base = arg * NUT_MULTIPLES - NUT_MIN_MULTIPLE;
+		double c1 = Math.cos(Utils.DEG_TO_RAD(X));
+		double s1 = Math.sin(Utils.DEG_TO_RAD(X));
+		double c2 = c1 * c1 - s1 * s1;
+		double s2 = 2 * s1 * c1;
+		
+		nutCos[base] = 1;
+		nutSin[base] = 0;
+		nutCos[base + 1] = c1;
+		nutSin[base + 1] = s1;
+		nutCos[base - 1] = c1;
+		nutSin[base - 1] = -s1;
+		nutCos[base + 2] = c2;
+		nutSin[base + 2] = s2;
+		nutCos[base - 2] = c2;
+		nutSin[base - 2] = -s2;
+		nutCos[base + 3] = c2 * c1 - s2 * s1;
+		nutSin[base + 3] = s2 * c1 + c2 * s1;
+	}
+	
 	public static void computeTopAstro(final Location loc, final Astro astro,
 			Astro topAstro) {
+		double tU, tCos, tSin;
+		
+		tU = Math.atan(0.99664719 * Math.tan(Utils.DEG_TO_RAD(loc
+				.getDegreeLat())));
+		tCos = Math.cos(tU) + (loc.getSeaLevel() / 6378140.0)
+				* Math.cos(Utils.DEG_TO_RAD(loc.getDegreeLat()));
+		tSin = 0.99664719 * Math.sin(tU) + (loc.getSeaLevel() / 6378140.0)
+				* Math.sin(Utils.DEG_TO_RAD(loc.getDegreeLat()));
+		computeTopAstro(loc.getDegreeLong(), tCos, tSin, astro, topAstro);
+	}
+	
+	/**
+	 * Apply the topocentric correction (parallax of the observer) to the
+	 * three days of an astro cache
+	 * @param ctx terms of the location
+	 * @param astro geocentric values
+	 * @param topAstro receives the topocentric values
+	 */
+	public static void computeTopAstro(final LocationContext ctx,
+			final Astro astro, Astro topAstro) {
+		computeTopAstro(ctx.getDegreeLong(), ctx.getTopoCos(),
+				ctx.getTopoSin(), astro, topAstro);
+	}
+	
+	/**
+	 * Same as computeTopAstro(LocationContext, Astro, Astro) with the terms
+	 * of the location
+	 * @param degreeLong longitude in degrees
+	 * @param tCos see LocationContext.getTopoCos
+	 * @param tSin see LocationContext.getTopoSin
+	 * @param astro geocentric values
+	 * @param topAstro receives the topocentric values
+	 */
+	public static void computeTopAstro(double degreeLong, double tCos,
+			double tSin, final Astro astro, Astro topAstro) {
 		int i;
-		double lHour, SP;
-		double tU, tCos, tSin, tRA0, tRA, tDEC;
+		double lHour;
+		double tRA0, tRA, tDEC;
+		double sinSP, sinLHour, cosLHour, cosDec;
 		
 		for (i = 0; i < 3; i++) {
-			lHour = limitAngle(astro.getSid()[i] + loc.getDegreeLong()
+			lHour = limitAngle(astro.getSid()[i] + degreeLong
 					- astro.getRa()[i]);
 			
-			SP = 8.794 / (3600 * astro.getRsum()[i]);
-			
-			tU = Math.atan(0.99664719 * Math.tan(Utils.DEG_TO_RAD(loc
-					.getDegreeLat())));
-			
-			tCos = Math.cos(tU) + ((loc.getSeaLevel()) / 6378140.0)
-			* Math.cos(Utils.DEG_TO_RAD(loc.getDegreeLat()));
-			
-			tSin = 0.99664719 * Math.sin(tU) + (loc.getSeaLevel() / 6378140.0)
-			* Math.sin(Utils.DEG_TO_RAD(loc.getDegreeLat()));
+			sinSP = getSinParallax(astro.getRsum()[i]);
+			sinLHour = Math.sin(Utils.DEG_TO_RAD(lHour));
+			cosLHour = Math.cos(Utils.DEG_TO_RAD(lHour));
+			cosDec = Math.cos(astro.getDec()[i]);
 			
-			tRA0 = (((-tCos) * Math.sin(Utils.DEG_TO_RAD(SP)) * Math.sin(Utils
-					.DEG_TO_RAD(lHour))) / (Math.cos(astro.getDec()[i]) - tCos
-							* Math.sin(Utils.DEG_TO_RAD(SP))
-							* Math.cos(Utils.DEG_TO_RAD(lHour))));
+			tRA0 = getTopoDra(tCos, sinSP, sinLHour, cosLHour, cosDec);
 			
 			tRA = astro.getRa()[i] + Utils.RAD_TO_DEG(tRA0);
 			
-			tDEC = Utils.RAD_TO_DEG(Math.atan2(
-					(Math.sin(astro.getDec()[i]) - tSin
-							* Math.sin(Utils.DEG_TO_RAD(SP)))
-							* Math.cos(tRA0), Math.cos(astro.getDec()[i])
-							- tCos * Math.sin(Utils.DEG_TO_RAD(SP))
-							* Math.cos(Utils.DEG_TO_RAD(lHour))));
+			tDEC = getTopoDec(tCos, tSin, sinSP, cosLHour,
+					Math.sin(astro.getDec()[i]), cosDec, tRA0);
 			
 			topAstro.getRa()[i] = tRA;
 			topAstro.getDec()[i] = tDEC;
@@ -445,6 +636,50 @@ public class AstroLib {
 		
 	}
 	
+	/**
+	 * Sine of the equatorial horizontal parallax of the sun, used by the
+	 * topocentric correction
+	 * @param rsum distance of the sun in AU
+	 * @return the sine of the parallax
+	 */
+	public static double getSinParallax(double rsum) {
+		double SP = 8.794 / (3600 * rsum);
+		
+		return Math.sin(Utils.DEG_TO_RAD(SP));
+	}
+	
+	/**
+	 * Parallax in right ascension of the topocentric correction
+	 * @param tCos see LocationContext.getTopoCos
+	 * @param sinSP see getSinParallax
+	 * @param sinLHour sine of the local hour angle of the sun
+	 * @param cosLHour cosine of the local hour angle of the sun
+	 * @param cosDec cosine of the geocentric declination
+	 * @return the parallax in radians, added to the right ascension
+	 */
+	public static double getTopoDra(double tCos, double sinSP,
+			double sinLHour, double cosLHour, double cosDec) {
+		return (((-tCos) * sinSP * sinLHour) / (cosDec - tCos * sinSP
+				* cosLHour));
+	}
+	
+	/**
+	 * Topocentric declination of the sun
+	 * @param tCos see LocationContext.getTopoCos
+	 * @param tSin see LocationContext.getTopoSin
+	 * @param sinSP see getSinParallax
+	 * @param cosLHour cosine of the local hour angle of the sun
+	 * @param sinDec sine of the geocentric declination
+	 * @param cosDec cosine of the geocentric declination
+	 * @param dra parallax in right ascension, see getTopoDra
+	 * @return the declination in degrees
+	 */
+	public static double getTopoDec(double tCos, double tSin, double sinSP,
+			double cosLHour, double sinDec, double cosDec, double dra) {
+		return Utils.RAD_TO_DEG(Math.atan2((sinDec - tSin * sinSP)
+				* Math.cos(dra), cosDec - tCos * sinSP * cosLHour));
+	}
+	
 	public static double limitAngle(double L) {
 		double F;
 		L /= 360.0;
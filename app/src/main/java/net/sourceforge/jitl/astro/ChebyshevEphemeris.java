@@ -0,0 +1,263 @@
+package net.sourceforge.jitl.astro;
+
+/**
+ * Solar ephemeris made of Chebyshev polynomials fitted on the full
+ * series of AstroLib.
+ *
+ * The covered period is cut into fixed intervals (32 days by default). On
+ * each interval ra, dec, sidtime and rsum are sampled at the Chebyshev
+ * nodes through <code>AstroLib.computeAstroDay</code>, and the resulting
+ * series are truncated to the smallest degree meeting the requested
+ * maximum error. Every interval is then checked against the full series
+ * between the nodes. An interval failing the check keeps using the full
+ * series, so the error never exceeds the requested maximum at the checked
+ * points. Days outside the covered period also use the full series.
+ *
+ * The sidereal time is fitted after removing its mean daily rotation and
+ * ra is unwrapped before fitting, so both stay smooth across 360 degrees.
+ * Once built, the ephemeris is immutable and can be shared between
+ * threads. Computing a day costs four polynomial evaluations instead of
+ * the VSOP87 and nutation series.
+ */
+public class ChebyshevEphemeris implements SolarEphemeris {
+
+	/**
+	 * default length of the fitted intervals, in days
+	 */
+	public static final int DEFAULT_INTERVAL = 32;
+
+	/**
+	 * default maximum error, in degrees for ra, dec and sidtime and in AU
+	 * for rsum
+	 */
+	public static final double DEFAULT_MAX_ERROR = 1e-6;
+
+	/* Number of Chebyshev nodes (and maximum number of coefficients) of an
+	 * interval */
+	static final int NODES = 24;
+
+	/* Number of points checked against the full series on each interval */
+	static final int CHECKS = 2 * NODES;
+
+	/* Fitted values */
+	static final int RA = 0, DEC = 1, SID = 2, RSUM = 3, VALUES = 4;
+
+	/* Mean daily rotation of the sidereal time, in degrees */
+	static final double SID_RATE = 360.98564736629;
+
+	private final double startJd;
+
+	private final int interval;
+
+	private final int intervals;
+
+	/* Coefficients of interval i and value v start at
+	 * (i * VALUES + v) * NODES */
+	private final double[] coefs;
+
+	/* Number of coefficients kept for interval i and value v, 0 when the
+	 * interval uses the full series */
+	private final int[] degrees;
+
+	private double measuredError;
+
+	private int fallbacks;
+
+	/**
+	 * Build an ephemeris covering a period of dates with the default
+	 * interval and maximum error
+	 * @param from first date
+	 * @param to last date (inclusive)
+	 */
+	public ChebyshevEphemeris(SimpleDate from, SimpleDate to) {
+		this(from, to, DEFAULT_INTERVAL, DEFAULT_MAX_ERROR);
+	}
+
+	/**
+	 * Build an ephemeris covering a period of dates. A margin is added on
+	 * both sides for the day before, the day after and any GMT difference.
+	 * @param from first date
+	 * @param to last date (inclusive)
+	 * @param interval length of the fitted intervals, in days
+	 * @param maxError maximum error, in degrees for ra, dec and sidtime and
+	 * in AU for rsum
+	 */
+	public ChebyshevEphemeris(SimpleDate from, SimpleDate to, int interval,
+			double maxError) {
+		this(AstroLib.getJulianDay(from, 0) - 2, (int) (AstroLib.getJulianDay(
+				to, 0) - AstroLib.getJulianDay(from, 0)) + 5, interval,
+				maxError);
+	}
+
+	/**
+	 * Build an ephemeris covering a period of julian days
+	 * @param startJd first julian day
+	 * @param days number of days covered
+	 * @param interval length of the fitted intervals, in days
+	 * @param maxError maximum error, in degrees for ra, dec and sidtime and
+	 * in AU for rsum
+	 */
+	public ChebyshevEphemeris(double startJd, int days, int interval,
+			double maxError) {
+		int i;
+		AstroDay ad = new AstroDay();
+
+		this.startJd = startJd;
+		this.interval = Math.max(interval, 1);
+		this.intervals = (Math.max(days, 1) + this.interval - 1)
+				/ this.interval;
+		this.coefs = new double[intervals * VALUES * NODES];
+		this.degrees = new int[intervals * VALUES];
+
+		for (i = 0; i < intervals; i++) {
+			fit(i, maxError, ad);
+		}
+	}
+
+	/**
+	 * @return first julian day covered by the fitted intervals
+	 */
+	public double getStartJd() {
+		return startJd;
+	}
+
+	/**
+	 * @return julian day following the last fitted interval
+	 */
+	public double getEndJd() {
+		return startJd + (double) intervals * interval;
+	}
+
+	/**
+	 * @return the largest error measured against the full series on the
+	 * fitted intervals
+	 */
+	public double getMeasuredError() {
+		return measuredError;
+	}
+
+	/**
+	 * @return number of intervals which did not meet the maximum error and
+	 * use the full series
+	 */
+	public int getFallbackIntervals() {
+		return fallbacks;
+	}
+
+	public void computeAstroDay(double julianDay, AstroDay astroday) {
+		int i, base;
+		double t, x;
+
+		t = (julianDay - startJd) / interval;
+		i = (int) Math.floor(t);
+		if (t < 0 || i >= intervals || degrees[i * VALUES] == 0) {
+			AstroLib.VSOP87.computeAstroDay(julianDay, astroday);
+			return;
+		}
+
+		x = 2 * (t - i) - 1;
+		base = i * VALUES;
+		astroday.setRa(AstroLib.limitAngle(evaluate(base + RA, x)));
+		astroday.setDec(Utils.DEG_TO_RAD(evaluate(base + DEC, x)));
+		astroday.setSidtime(AstroLib.limitAngle(meanSidtime(julianDay)
+				+ evaluate(base + SID, x)));
+		astroday.setDra(0);
+		astroday.setRsum(evaluate(base + RSUM, x));
+	}
+
+	/* Clenshaw evaluation of the series of a value at x in [-1, 1] */
+	private double evaluate(int value, double x) {
+		int j, start = value * NODES;
+		double b0 = 0, b1 = 0, b2;
+
+		for (j = degrees[value] - 1; j > 0; j--) {
+			b2 = b1;
+			b1 = b0;
+			b0 = 2 * x * b1 - b2 + coefs[start + j];
+		}
+		return x * b0 - b1 + coefs[start] / 2;
+	}
+
+	/* Mean rotation of the sidereal time modulo 360, the integer part of
+	 * the days being removed first to keep the full precision */
+	static double meanSidtime(double julianDay) {
+		double d = julianDay - 2451545;
+		double n = Math.floor(d);
+		return AstroLib.limitAngle(360 * (d - n) + (SID_RATE - 360) * d);
+	}
+
+	/* Bring an angle difference into [-180, 180[ */
+	static double wrap180(double a) {
+		return a - 360 * Math.floor((a + 180) / 360);
+	}
+
+	private void fit(int i, double maxError, AstroDay ad) {
+		int k, j, v, kept;
+		double jd0 = startJd + (double) i * interval;
+		double samples[][] = new double[VALUES][NODES];
+		double x, tail, err;
+
+		/* Sample the full series at the Chebyshev nodes, ordered by
+		 * increasing time so that ra and sidtime can be unwrapped */
+		for (k = 0; k < NODES; k++) {
+			x = -Math.cos(Utils.PI * (k + 0.5) / NODES);
+			AstroLib.computeAstroDay(jd0 + (x + 1) / 2 * interval, ad);
+			samples[RA][k] = ad.getRa();
+			samples[DEC][k] = Utils.RAD_TO_DEG(ad.getDec());
+			samples[SID][k] = wrap180(ad.getSidtime()
+					- meanSidtime(jd0 + (x + 1) / 2 * interval));
+			samples[RSUM][k] = ad.getRsum();
+			if (k > 0) {
+				samples[RA][k] = samples[RA][k - 1]
+						+ wrap180(samples[RA][k] - samples[RA][k - 1]);
+				samples[SID][k] = samples[SID][k - 1]
+						+ wrap180(samples[SID][k] - samples[SID][k - 1]);
+			}
+		}
+
+		/* Coefficients, then truncation: the dropped coefficients must not
+		 * add up to more than half of the maximum error */
+		for (v = 0; v < VALUES; v++) {
+			int start = (i * VALUES + v) * NODES;
+			for (j = 0; j < NODES; j++) {
+				double sum = 0;
+				for (k = 0; k < NODES; k++) {
+					sum += samples[v][k]
+							* Math.cos(Utils.PI * j * (NODES - k - 0.5) / NODES);
+				}
+				coefs[start + j] = 2.0 * sum / NODES;
+			}
+			tail = 0;
+			kept = NODES;
+			while (kept > 1
+					&& tail + Math.abs(coefs[start + kept - 1]) <= maxError / 2) {
+				tail += Math.abs(coefs[start + --kept]);
+			}
+			degrees[i * VALUES + v] = kept;
+		}
+
+		/* Check between the nodes against the full series */
+		err = 0;
+		for (k = 0; k < CHECKS; k++) {
+			double jd = jd0 + (k + 0.5) * interval / CHECKS;
+			x = 2 * (jd - jd0) / interval - 1;
+			AstroLib.computeAstroDay(jd, ad);
+			err = Math.max(err, Math.abs(wrap180(evaluate(i * VALUES + RA, x)
+					- ad.getRa())));
+			err = Math.max(err, Math.abs(evaluate(i * VALUES + DEC, x)
+					- Utils.RAD_TO_DEG(ad.getDec())));
+			err = Math.max(err, Math.abs(wrap180(meanSidtime(jd)
+					+ evaluate(i * VALUES + SID, x) - ad.getSidtime())));
+			err = Math.max(err, Math.abs(evaluate(i * VALUES + RSUM, x)
+					- ad.getRsum()));
+		}
+
+		if (err > maxError) {
+			for (v = 0; v < VALUES; v++)
+				degrees[i * VALUES + v] = 0;
+			fallbacks++;
+		} else {
+			measuredError = Math.max(measuredError, err);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package net.sourceforge.jitl.astro;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide store of the solar values computed by
+ * <code>AstroLib.computeAstroDay</code>.
+ *
+ * Right ascension, declination, sidereal time and radius vector only
+ * depend on the julian day, so every location using the same day (and
+ * the same GMT difference) can share one evaluation of the VSOP87 and
+ * nutation series. The store is a fixed size table indexed by the day
+ * number: consecutive days of a time zone use consecutive slots and a
+ * slot is simply overwritten when another day lands on it.
+ *
+ * The values are stored in place, so a miss does not allocate. Each slot
+ * has a version which is odd while a thread writes the slot: a reader
+ * which sees an odd version, or a version changed during its read,
+ * computes the values itself, and a writer which finds the slot busy does
+ * not store them. The table can be read and written by any number of
+ * threads without locking.
+ */
+public class EphemerisCache {
+
+	/* Number of slots, must be a power of two. A little more than 11 years
+	 * of days for a single time zone */
+	static final int SIZE = 4096;
+
+	private static final int MASK = SIZE - 1;
+
+	/* Values of a slot */
+	private static final int VALUES = 5;
+
+	/* Slot i holds { julianDay, ra, dec, sidtime, rsum } at VALUES * i, as
+	 * the bits of the doubles */
+	private static final AtomicLongArray entries = new AtomicLongArray(SIZE
+			* VALUES);
+
+	/* Version of each slot, odd while the slot is written */
+	private static final AtomicLongArray versions = new AtomicLongArray(SIZE);
+
+	private static volatile boolean enabled = true;
+
+	/* No julian day matches an empty slot */
+	static {
+		clear();
+	}
+
+	private EphemerisCache() {
+	}
+
+	/**
+	 * enables or disables the shared store. When disabled, the values are
+	 * computed on every request
+	 * @param enabled true to share computed values between all callers
+	 */
+	public static void setEnabled(boolean enabled) {
+		EphemerisCache.enabled = enabled;
+	}
+
+	/**
+	 * @return true if the shared store is used
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * removes all stored values
+	 */
+	public static void clear() {
+		for (int i = 0; i < SIZE; i++) {
+			store(i, Double.NaN, 0, 0, 0, 0);
+		}
+	}
+
+	/**
+	 * Fill an AstroDay with the values of a julian day, reading them
+	 * from the store when available.
+	 * @param julianDay the julian day
+	 * @param astroday the AstroDay to fill
+	 */
+	static void getAstroDay(double julianDay, AstroDay astroday) {
+		int slot, i;
+		long version;
+		double ra, dec, sidtime, rsum;
+
+		if (!enabled) {
+			AstroLib.computeAstroDay(julianDay, astroday);
+			return;
+		}
+
+		slot = slot(julianDay);
+		i = slot * VALUES;
+		version = versions.get(slot);
+
+		if ((version & 1) == 0
+				&& Double.longBitsToDouble(entries.get(i)) == julianDay) {
+			ra = Double.longBitsToDouble(entries.get(i + 1));
+			dec = Double.longBitsToDouble(entries.get(i + 2));
+			sidtime = Double.longBitsToDouble(entries.get(i + 3));
+			rsum = Double.longBitsToDouble(entries.get(i + 4));
+			if (versions.get(slot) == version) {
+				astroday.setRa(ra);
+				astroday.setDec(dec);
+				astroday.setSidtime(sidtime);
+				astroday.setDra(0);
+				astroday.setRsum(rsum);
+				return;
+			}
+		}
+
+		AstroLib.computeAstroDay(julianDay, astroday);
+		store(slot, julianDay, astroday.getRa(), astroday.getDec(),
+				astroday.getSidtime(), astroday.getRsum());
+	}
+
+	/* Write the values of a slot, unless another thread is writing it */
+	private static void store(int slot, double julianDay, double ra,
+			double dec, double sidtime, double rsum) {
+		int i = slot * VALUES;
+		long version = versions.get(slot);
+
+		if ((version & 1) != 0
+				|| !versions.compareAndSet(slot, version, version + 1)) {
+			return;
+		}
+		entries.set(i, Double.doubleToRawLongBits(julianDay));
+		entries.set(i + 1, Double.doubleToRawLongBits(ra));
+		entries.set(i + 2, Double.doubleToRawLongBits(dec));
+		entries.set(i + 3, Double.doubleToRawLongBits(sidtime));
+		entries.set(i + 4, Double.doubleToRawLongBits(rsum));
+		versions.set(slot, version + 2);
+	}
+
+	/* The day number gives the slot, the fraction of the day (which comes
+	 * from the GMT difference) spreads the different time zones over the
+	 * table */
+	static int slot(double julianDay) {
+		double day = Math.floor(julianDay);
+		long zone = Double.doubleToLongBits(julianDay - day)
+				* 0x9E3779B97F4A7C15L;
+		return (int) (((long) day + (zone >>> 40)) & MASK);
+	}
+}
@@ -0,0 +1,121 @@
+package net.sourceforge.jitl.astro;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes precomputed solar values to a binary file which can later be
+ * mapped in memory by <code>MappedEphemeris</code>.
+ *
+ * The file is little-endian. A 24 bytes header (magic number, version,
+ * julian day of the first record and number of records) is followed by
+ * one record per day holding ra, dec, sidtime and rsum as doubles, as
+ * computed by <code>AstroLib.computeAstroDay</code> at 0h UT.
+ *
+ * Usage: <code>java net.sourceforge.jitl.astro.EphemerisFile file fromYear
+ * toYear</code>
+ */
+public class EphemerisFile {
+
+	static final int MAGIC = 0x4850454A; /* "JEPH" */
+
+	static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 24;
+
+	static final int VALUES = 4;
+
+	static final int RECORD_SIZE = VALUES * 8;
+
+	/* Days added before the first and after the last day of the period,
+	 * for the astro window and the interpolation of other GMT differences */
+	static final int MARGIN = 3;
+
+	private EphemerisFile() {
+	}
+
+	/**
+	 * Write the solar values of a range of years
+	 * @param file the file to create
+	 * @param fromYear first year
+	 * @param toYear last year (inclusive)
+	 * @return the number of records written
+	 * @throws IOException if the file cannot be written
+	 */
+	public static int write(File file, int fromYear, int toYear)
+			throws IOException {
+		double startJd = AstroLib.getJulianDay(new SimpleDate(1, 1, fromYear),
+				0) - MARGIN;
+		int count = (int) (AstroLib.getJulianDay(new SimpleDate(31, 12,
+				toYear), 0) + MARGIN - startJd) + 1;
+
+		return write(file, startJd, count);
+	}
+
+	/**
+	 * Write the solar values of consecutive days
+	 * @param file the file to create
+	 * @param startJd julian day of the first record
+	 * @param count number of records
+	 * @return the number of records written
+	 * @throws IOException if the file cannot be written
+	 */
+	public static int write(File file, double startJd, int count)
+			throws IOException {
+		int i;
+		AstroDay ad = new AstroDay();
+		ByteBuffer buffer = ByteBuffer.allocate(256 * RECORD_SIZE).order(
+				ByteOrder.LITTLE_ENDIAN);
+		FileOutputStream out = new FileOutputStream(file);
+
+		try {
+			FileChannel channel = out.getChannel();
+
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putDouble(startJd);
+			buffer.putInt(count);
+			buffer.putInt(0);
+
+			for (i = 0; i < count; i++) {
+				if (buffer.remaining() < RECORD_SIZE) {
+					flush(channel, buffer);
+				}
+				AstroLib.computeAstroDay(startJd + i, ad);
+				buffer.putDouble(ad.getRa());
+				buffer.putDouble(ad.getDec());
+				buffer.putDouble(ad.getSidtime());
+				buffer.putDouble(ad.getRsum());
+			}
+			flush(channel, buffer);
+		} finally {
+			out.close();
+		}
+
+		return count;
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer)
+			throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3) {
+			System.err.println("usage: EphemerisFile file fromYear toYear");
+			System.exit(1);
+		}
+
+		int count = write(new File(args[0]), Integer.parseInt(args[1]),
+				Integer.parseInt(args[2]));
+		System.out.println(count + " days written to " + args[0]);
+	}
+}
@@ -0,0 +1,158 @@
+package net.sourceforge.jitl.astro;
+
+/**
+ * Location dependent terms of the astronomical formulae, computed once
+ * per location instead of on every call: trigonometry of the latitude,
+ * geocentric terms of the observer used by the topocentric correction,
+ * atmospheric refraction factor and altitude correction.
+ *
+ * A context is bound to a location through <code>update</code>, which
+ * only recomputes the terms when the location values have changed since
+ * the last call. This makes it cheap to call before every computation,
+ * even when the Location object may have been modified in between.
+ */
+public class LocationContext {
+
+	private boolean valid;
+
+	private double degreeLat;
+
+	private double degreeLong;
+
+	private double seaLevel;
+
+	private double pressure;
+
+	private double temperature;
+
+	private double sinLat;
+
+	private double cosLat;
+
+	private double topoCos;
+
+	private double topoSin;
+
+	private double refraction;
+
+	private double altitudeRefraction;
+
+	/**
+	 * Creates an empty context, <code>update</code> must be called before
+	 * using it
+	 */
+	public LocationContext() {
+	}
+
+	/**
+	 * Creates a context bound to a location
+	 * @param loc the location
+	 */
+	public LocationContext(Location loc) {
+		update(loc);
+	}
+
+	/**
+	 * Bind the context to a location
+	 * @param loc the location
+	 * @return true if the terms were recomputed
+	 */
+	public boolean update(Location loc) {
+		return update(loc, loc.getDegreeLat());
+	}
+
+	/**
+	 * Bind the context to a location, using another latitude (for the
+	 * nearest latitude methods)
+	 * @param loc the location
+	 * @param degreeLat the latitude to use instead of the location one
+	 * @return true if the terms were recomputed
+	 */
+	public boolean update(Location loc, double degreeLat) {
+		double tU;
+
+		if (valid && this.degreeLat == degreeLat
+				&& degreeLong == loc.getDegreeLong()
+				&& seaLevel == loc.getSeaLevel()
+				&& pressure == loc.getPressure()
+				&& temperature == loc.getTemperature()) {
+			return false;
+		}
+
+		this.degreeLat = degreeLat;
+		this.degreeLong = loc.getDegreeLong();
+		this.seaLevel = loc.getSeaLevel();
+		this.pressure = loc.getPressure();
+		this.temperature = loc.getTemperature();
+
+		sinLat = Math.sin(Utils.DEG_TO_RAD(degreeLat));
+		cosLat = Math.cos(Utils.DEG_TO_RAD(degreeLat));
+
+		tU = Math.atan(0.99664719 * Math.tan(Utils.DEG_TO_RAD(degreeLat)));
+		topoCos = Math.cos(tU) + (seaLevel / 6378140.0) * cosLat;
+		topoSin = 0.99664719 * Math.sin(tU) + (seaLevel / 6378140.0) * sinLat;
+
+		refraction = (pressure / 1010.0) * (283 / (273 + temperature));
+		altitudeRefraction = Utils.ALTITUDE_REFRACTION
+				* Math.pow(seaLevel, 0.5);
+
+		valid = true;
+		return true;
+	}
+
+	public double getDegreeLat() {
+		return degreeLat;
+	}
+
+	public double getDegreeLong() {
+		return degreeLong;
+	}
+
+	public double getSeaLevel() {
+		return seaLevel;
+	}
+
+	/**
+	 * @return sine of the latitude
+	 */
+	public double getSinLat() {
+		return sinLat;
+	}
+
+	/**
+	 * @return cosine of the latitude
+	 */
+	public double getCosLat() {
+		return cosLat;
+	}
+
+	/**
+	 * @return distance of the observer to the earth axis (in earth radius)
+	 * used by the topocentric correction
+	 */
+	public double getTopoCos() {
+		return topoCos;
+	}
+
+	/**
+	 * @return distance of the observer to the equatorial plane (in earth
+	 * radius) used by the topocentric correction
+	 */
+	public double getTopoSin() {
+		return topoSin;
+	}
+
+	/**
+	 * @return pressure and temperature factor of the atmospheric refraction
+	 */
+	public double getRefraction() {
+		return refraction;
+	}
+
+	/**
+	 * @return altitude correction of the sunrise and sunset angle, in degrees
+	 */
+	public double getAltitudeRefraction() {
+		return altitudeRefraction;
+	}
+}
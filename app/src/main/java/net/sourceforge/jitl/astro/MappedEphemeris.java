@@ -0,0 +1,143 @@
+package net.sourceforge.jitl.astro;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Solar ephemeris read from a file written by <code>EphemerisFile</code>.
+ *
+ * The file is mapped in memory, so it is loaded lazily by the operating
+ * system and its pages are shared by every process mapping it. Reading a
+ * day does not allocate any object.
+ *
+ * The records are computed at 0h UT. A julian day falling exactly on a
+ * record is read as is, others (locations with a GMT difference) are
+ * interpolated with a cubic Lagrange polynomial over the four surrounding
+ * records, ra being unwrapped and sidtime stripped of its daily rotation
+ * first, which keeps them within 1e-6 degrees of the full series. Days
+ * outside the file use the full series.
+ */
+public class MappedEphemeris implements SolarEphemeris {
+
+	private final ByteBuffer buffer;
+
+	private final double startJd;
+
+	private final int count;
+
+	/**
+	 * Map an ephemeris file
+	 * @param file a file written by EphemerisFile
+	 * @throws IOException if the file cannot be read or is not an
+	 * ephemeris file
+	 */
+	public MappedEphemeris(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+		try {
+			FileChannel channel = raf.getChannel();
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+		} finally {
+			raf.close();
+		}
+
+		if (buffer.capacity() < EphemerisFile.HEADER_SIZE
+				|| buffer.getInt(0) != EphemerisFile.MAGIC
+				|| buffer.getInt(4) != EphemerisFile.VERSION) {
+			throw new IOException(file + " is not an ephemeris file");
+		}
+
+		startJd = buffer.getDouble(8);
+		count = buffer.getInt(16);
+
+		if (buffer.capacity() < EphemerisFile.HEADER_SIZE + (long) count
+				* EphemerisFile.RECORD_SIZE) {
+			throw new IOException(file + " is truncated");
+		}
+	}
+
+	/**
+	 * @return julian day of the first record
+	 */
+	public double getStartJd() {
+		return startJd;
+	}
+
+	/**
+	 * @return number of records (days) in the file
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	public void computeAstroDay(double julianDay, AstroDay astroday) {
+		int n, k;
+		double t, f, ra, sid, raN, sidN;
+		double sra = 0, sdec = 0, ssid = 0, srsum = 0;
+
+		t = julianDay - startJd;
+		n = (int) Math.floor(t);
+		f = t - n;
+
+		if (f == 0 && n >= 0 && n < count) {
+			astroday.setRa(value(n, 0));
+			astroday.setDec(value(n, 1));
+			astroday.setSidtime(value(n, 2));
+			astroday.setDra(0);
+			astroday.setRsum(value(n, 3));
+			return;
+		}
+
+		if (n < 1 || n + 2 >= count) {
+			AstroLib.VSOP87.computeAstroDay(julianDay, astroday);
+			return;
+		}
+
+		raN = value(n, 0);
+		sidN = ChebyshevEphemeris.wrap180(value(n, 2)
+				- ChebyshevEphemeris.meanSidtime(startJd + n));
+
+		for (k = -1; k <= 2; k++) {
+			double wk = weight(k, f);
+			ra = raN + ChebyshevEphemeris.wrap180(value(n + k, 0) - raN);
+			sid = sidN
+			+ ChebyshevEphemeris.wrap180(value(n + k, 2)
+					- ChebyshevEphemeris.meanSidtime(startJd + n + k)
+					- sidN);
+			sra += wk * ra;
+			sdec += wk * value(n + k, 1);
+			ssid += wk * sid;
+			srsum += wk * value(n + k, 3);
+		}
+
+		astroday.setRa(AstroLib.limitAngle(sra));
+		astroday.setDec(sdec);
+		astroday.setSidtime(AstroLib.limitAngle(ChebyshevEphemeris
+				.meanSidtime(julianDay)
+				+ ssid));
+		astroday.setDra(0);
+		astroday.setRsum(srsum);
+	}
+
+	private double value(int record, int index) {
+		return buffer.getDouble(EphemerisFile.HEADER_SIZE + record
+				* EphemerisFile.RECORD_SIZE + index * 8);
+	}
+
+	/* Cubic Lagrange weight of the record at offset k (-1 to 2) for a
+	 * fraction f of day */
+	static double weight(int k, double f) {
+		if (k == -1)
+			return -f * (f - 1) * (f - 2) / 6.0;
+		if (k == 0)
+			return (f + 1) * (f - 1) * (f - 2) / 2.0;
+		if (k == 1)
+			return -(f + 1) * f * (f - 2) / 2.0;
+		return (f + 1) * f * (f - 1) / 6.0;
+	}
+}
@@ -0,0 +1,22 @@
+package net.sourceforge.jitl.astro;
+
+/**
+ * Source of the geocentric solar values (right ascension, declination,
+ * sidereal time and radius vector) used to compute prayer times.
+ *
+ * Implementations must be thread-safe, the same instance being shared by
+ * all the Jitl objects using it.
+ *
+ * @see AstroLib#VSOP87
+ */
+public interface SolarEphemeris {
+
+	/**
+	 * Fill an AstroDay with the values of the sun for a julian day
+	 * @param julianDay the julian day
+	 * @param astroday receives ra and sidtime (degrees), dec (radians)
+	 * and rsum (AU)
+	 */
+	void computeAstroDay(double julianDay, AstroDay astroday);
+
+}
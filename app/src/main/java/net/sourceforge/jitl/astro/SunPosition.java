@@ -0,0 +1,167 @@
+package net.sourceforge.jitl.astro;
+
+/**
+ * Altitude and azimuth of the sun at any instant, cheap enough to be
+ * computed for every frame of an animation.
+ *
+ * The ephemeris is only evaluated at 0h UT of the day of the instant and
+ * of the days around it. An instant is then placed in this window by
+ * interpolating the right ascension and the declination (Meeus,
+ * Astronomical Algorithms, chapter 3) and by advancing the sidereal time
+ * linearly, which costs six trigonometric calls and does not allocate.
+ * Moving to the next or previous day evaluates a single new day. The
+ * position is geocentric and geometric (no refraction), within 0.01
+ * degrees of the position computed with the ephemeris at the instant.
+ * An instance is not thread-safe.
+ */
+public class SunPosition {
+	
+	/* Mean sidereal degrees per day */
+	private static final double SIDEREAL_RATE = 360.98564736629;
+	
+	/* Julian day of the epoch */
+	private static final double EPOCH_JD = 2440587.5;
+	
+	private final SolarEphemeris ephemeris;
+	
+	private final AstroDay astroDay = new AstroDay();
+	
+	private Location loc;
+	
+	private double degreeLat = Double.NaN, sinLat, cosLat;
+	
+	/* julian day at 0h UT of the middle day of the window, 0 if empty */
+	private double windowJd;
+	
+	/* Right ascensions (degrees), declinations (radians) and sidereal
+	 * times (degrees) of the three days */
+	private final double ra[] = new double[3];
+	
+	private final double dec[] = new double[3];
+	
+	private final double sid[] = new double[3];
+	
+	/* Interpolation differences of the window */
+	private double raA, raB, decA, decB;
+	
+	private double altitude, azimuth;
+	
+	/**
+	 * Creates a sun position using the VSOP87 ephemeris
+	 * @param loc the location of the observer
+	 */
+	public SunPosition(Location loc) {
+		this(loc, AstroLib.VSOP87);
+	}
+	
+	/**
+	 * Creates a sun position
+	 * @param loc the location of the observer
+	 * @param ephemeris source of the solar values of each day
+	 */
+	public SunPosition(Location loc, SolarEphemeris ephemeris) {
+		this.loc = loc;
+		this.ephemeris = ephemeris;
+	}
+	
+	/**
+	 * changes the location, the days already computed are kept
+	 * @param loc the new location
+	 */
+	public void setLocation(Location loc) {
+		this.loc = loc;
+	}
+	
+	/**
+	 * Compute the position of the sun at an instant
+	 * @param millis milliseconds since 1970-01-01T00:00:00Z
+	 */
+	public void compute(long millis) {
+		double jd, day, n, A, B, H, sinB, cosB, sinH, cosH;
+		
+		jd = millis / 86400000.0 + EPOCH_JD;
+		day = Math.floor(jd - 0.5) + 0.5;
+		if (day != windowJd) {
+			moveWindow(day);
+		}
+		if (loc.getDegreeLat() != degreeLat) {
+			degreeLat = loc.getDegreeLat();
+			sinLat = Math.sin(Utils.DEG_TO_RAD(degreeLat));
+			cosLat = Math.cos(Utils.DEG_TO_RAD(degreeLat));
+		}
+		
+		/* Place the instant in the window */
+		n = jd - day;
+		A = ra[1] + n * (raA + raB * n) / 2.0;
+		B = dec[1] + n * (decA + decB * n) / 2.0;
+		H = Utils.DEG_TO_RAD(sid[1] + SIDEREAL_RATE * n + loc.getDegreeLong()
+				- A);
+		
+		sinB = Math.sin(B);
+		cosB = Math.cos(B);
+		sinH = Math.sin(H);
+		cosH = Math.cos(H);
+		altitude = Utils.RAD_TO_DEG(Math.asin(sinLat * sinB + cosLat * cosB
+				* cosH));
+		azimuth = AstroLib.limitAngle(Utils.RAD_TO_DEG(Math.atan2(-cosB
+				* sinH, sinB * cosLat - cosB * cosH * sinLat)));
+	}
+	
+	/**
+	 * @return altitude of the centre of the sun above the horizon in
+	 * degrees, negative below it
+	 */
+	public double getAltitude() {
+		return altitude;
+	}
+	
+	/**
+	 * @return azimuth of the sun in degrees, clockwise from the north
+	 */
+	public double getAzimuth() {
+		return azimuth;
+	}
+	
+	/* Compute the days around day, reusing two of them when day follows
+	 * or precedes the middle day */
+	private void moveWindow(double day) {
+		int i;
+		
+		if (day == windowJd + 1) {
+			for (i = 0; i < 2; i++) {
+				ra[i] = ra[i + 1];
+				dec[i] = dec[i + 1];
+				sid[i] = sid[i + 1];
+			}
+			computeDay(day + 1, 2);
+		} else if (day == windowJd - 1) {
+			for (i = 2; i > 0; i--) {
+				ra[i] = ra[i - 1];
+				dec[i] = dec[i - 1];
+				sid[i] = sid[i - 1];
+			}
+			computeDay(day - 1, 0);
+		} else {
+			for (i = 0; i < 3; i++) {
+				computeDay(day + i - 1, i);
+			}
+		}
+		windowJd = day;
+		
+		/* Keep the right ascensions continuous when they wrap at the march
+		 * equinox, the shifted days may already be out of 0-360 */
+		ra[0] = ra[1] + AstroLib.limitAngle180between(ra[0] - ra[1]);
+		ra[2] = ra[1] + AstroLib.limitAngle180between(ra[2] - ra[1]);
+		raA = ra[2] - ra[0];
+		raB = (ra[2] - ra[1]) - (ra[1] - ra[0]);
+		decA = dec[2] - dec[0];
+		decB = (dec[2] - dec[1]) - (dec[1] - dec[0]);
+	}
+	
+	private void computeDay(double jd, int i) {
+		ephemeris.computeAstroDay(jd, astroDay);
+		ra[i] = astroDay.getRa();
+		dec[i] = astroDay.getDec();
+		sid[i] = astroDay.getSidtime();
+	}
+}
@@ -0,0 +1,572 @@
+package net.sourceforge.jitl;
+
+import net.sourceforge.jitl.astro.AstroDay;
+import net.sourceforge.jitl.astro.AstroLib;
+import net.sourceforge.jitl.astro.Direction;
+import net.sourceforge.jitl.astro.Dms;
+import net.sourceforge.jitl.astro.Location;
+import net.sourceforge.jitl.astro.LocationKey;
+import net.sourceforge.jitl.astro.SimpleDate;
+import net.sourceforge.jitl.astro.Utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+public class JitlTest {
+
+    private static void assertSamePrayers(DayPrayers expected, DayPrayers actual) {
+        for (int i = 0; i < 6; i++) {
+            Prayer e = expected.getPrayers()[i];
+            Prayer a = actual.getPrayers()[i];
+            assertEquals(e.toString(), a.toString());
+            assertEquals(e.isExtreme(), a.isExtreme());
+        }
+    }
+
+    @Test
+    public void testPrayerTimesRangeMatchesSingleDays() {
+        // Given
+        Location location = new Location(51.5, -0.12, 0, 0); // London
+        Jitl range = new Jitl(location, Method.MUSLIM_LEAGUE);
+        Jitl single = new Jitl(location, Method.MUSLIM_LEAGUE);
+
+        // When: the range crosses the end of a leap year
+        DayPrayers[] days = range.getPrayerTimesRange(new SimpleDate(20, 12, 2024), new SimpleDate(10, 1, 2025));
+
+        // Then
+        assertEquals(22, days.length);
+        for (int i = 0; i < days.length; i++) {
+            SimpleDate date = i < 12 ? new SimpleDate(20 + i, 12, 2024) : new SimpleDate(i - 11, 1, 2025);
+            assertSamePrayers(single.getPrayerTimes(date), days[i]);
+        }
+    }
+
+    @Test
+    public void testTimetableMatchesPrayerTimesRange() {
+        Location location = new Location(65, 25.5, 2, 0);
+        Method method = Method.MUSLIM_LEAGUE.copy();
+        method.setExtremeLatitude(ExtremeLatitude.GOOD_INVALID);
+        SimpleDate from = new SimpleDate(1, 1, 2024);
+        SimpleDate to = new SimpleDate(31, 12, 2024);
+
+        Timetable table = new Jitl(location, method).getTimetable(from, to);
+        DayPrayers[] days = new Jitl(location, method).getPrayerTimesRange(from, to);
+
+        assertEquals(366, table.getDays());
+        Prayer prayer = new Prayer();
+        int[] column = new int[table.getDays()];
+        for (int k = 0; k < Timetable.PRAYERS; k++) {
+            table.copySeconds(k, 0, column, 0, column.length);
+            for (int i = 0; i < days.length; i++) {
+                table.getPrayer(i, k, prayer);
+                assertEquals(days[i].getPrayers()[k].toString(), prayer.toString());
+                assertEquals(days[i].getPrayers()[k].isExtreme(), table.isExtreme(i, k));
+                assertEquals(table.getSeconds(i, k), column[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testParallelTimetableMatchesSequential() {
+        Location location = new Location(59.33, 18.07, 1, 0);
+        Method method = Method.MUSLIM_LEAGUE.copy();
+        method.setExtremeLatitude(ExtremeLatitude.GOOD_INVALID);
+        SimpleDate from = new SimpleDate(15, 11, 2023);
+        SimpleDate to = new SimpleDate(3, 2, 2026);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            Timetable sequential = new Jitl(location, method).getTimetable(from, to);
+            Timetable parallel = new Jitl(location, method).getTimetable(from, to, pool);
+
+            assertEquals(sequential.getDays(), parallel.getDays());
+            for (int k = 0; k < Timetable.PRAYERS; k++) {
+                for (int i = 0; i < sequential.getDays(); i++) {
+                    assertEquals(sequential.getSeconds(i, k), parallel.getSeconds(i, k));
+                    assertEquals(sequential.isExtreme(i, k), parallel.isExtreme(i, k));
+                }
+            }
+            assertEquals(0, new Jitl(location, method).getTimetable(to, from, pool).getDays());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testInterpolatedTimetableStaysCloseToExact() {
+        Method method = Method.MUSLIM_LEAGUE.copy();
+        method.setRound(Rounding.NONE);
+        method.setExtremeLatitude(ExtremeLatitude.GOOD_INVALID);
+        SimpleDate from = new SimpleDate(1, 1, 2024);
+        SimpleDate to = new SimpleDate(31, 12, 2025);
+
+        // London has invalid fajr and ishaa in summer, computed exactly
+        for (Location location : new Location[] { new Location(40.71, -74.0, -5, 0), new Location(51.5, -0.12, 0, 0) }) {
+            Timetable exact = new Jitl(location, method).getTimetable(from, to);
+            Timetable interpolated = new Timetable(from, exact.getDays());
+            assertTrue(new Jitl(location, method).getTimetable(interpolated, 7, 2) <= 2);
+
+            for (int k = 0; k < Timetable.PRAYERS; k++) {
+                for (int i = 0; i < exact.getDays(); i++) {
+                    assertEquals(exact.isExtreme(i, k), interpolated.isExtreme(i, k));
+                    if (exact.getSeconds(i, k) == Timetable.INVALID || exact.isExtreme(i, k)) {
+                        assertEquals(exact.getSeconds(i, k), interpolated.getSeconds(i, k));
+                    } else {
+                        assertEquals(exact.getSeconds(i, k), interpolated.getSeconds(i, k), 2);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPrayerTimesRangeIsLimitedByBuffer() {
+        Jitl itl = new Jitl(new Location(21.42, 39.82, 3, 0), Method.UMM_ALQURRA);
+        DayPrayers[] buffer = new DayPrayers[5];
+
+        assertEquals(5, itl.getPrayerTimesRange(new SimpleDate(1, 3, 2024), new SimpleDate(31, 3, 2024), buffer));
+        for (DayPrayers dp : buffer) {
+            assertNotNull(dp);
+        }
+        assertEquals(0, itl.getPrayerTimesRange(new SimpleDate(2, 3, 2024), new SimpleDate(1, 3, 2024), buffer));
+    }
+
+    @Test
+    public void testNearestGoodDayDoesNotDependOnComputedDays() {
+        Location location = new Location(65, 25.5, 2, 0);
+        ExtremeLatitude[] extremes = { ExtremeLatitude.GOOD_ALL, ExtremeLatitude.GOOD_INVALID };
+
+        for (ExtremeLatitude extreme : extremes) {
+            Method method = Method.MUSLIM_LEAGUE.copy();
+            method.setExtremeLatitude(extreme);
+            Jitl reused = new Jitl(location, method);
+
+            // Days in reverse order with imsaak in between, against a new engine for each day
+            for (int day = 60; day >= 0; day -= 3) {
+                SimpleDate date = day < 30 ? new SimpleDate(day + 1, 6, 2024) : new SimpleDate(day - 29, 7, 2024);
+                Jitl fresh = new Jitl(location, method);
+                assertSamePrayers(fresh.getPrayerTimes(date), reused.getPrayerTimes(date));
+                assertEquals(new Jitl(location, method).getImsaak(date).toString(), reused.getImsaak(date).toString());
+            }
+        }
+    }
+
+    @Test
+    public void testDayScheduleMatchesSeparateCalls() {
+        Location location = new Location(62, 10, 1, 0);
+        ExtremeLatitude[] extremes = { ExtremeLatitude.NONE_EX, ExtremeLatitude.LAT_INVALID, ExtremeLatitude.GOOD_INVALID,
+                ExtremeLatitude.GOOD_ALL, ExtremeLatitude.HALF_INVALID, ExtremeLatitude.MIN_ALWAYS };
+        DaySchedule schedule = new DaySchedule();
+
+        for (ExtremeLatitude extreme : extremes) {
+            Method method = Method.ISNA.copy();
+            method.setExtremeLatitude(extreme);
+            method.setImsaakInv(extreme == ExtremeLatitude.MIN_ALWAYS ? 10 : 0);
+            Jitl fused = new Jitl(location, method);
+            Jitl separate = new Jitl(location, method);
+
+            for (int day = 1; day <= 360; day += 7) {
+                SimpleDate date = new SimpleDate(day % 28 + 1, day / 30 + 1, 2024);
+                fused.getDaySchedule(date, schedule);
+                assertSamePrayers(separate.getPrayerTimes(date), schedule.getDayPrayers());
+                Prayer imsaak = separate.getImsaak(date);
+                Prayer nextFajr = separate.getNextDayFajr(date);
+                assertEquals(imsaak.toString(), schedule.imsaak().toString());
+                assertEquals(imsaak.isExtreme(), schedule.imsaak().isExtreme());
+                assertEquals(nextFajr.toString(), schedule.nextFajr().toString());
+                assertEquals(nextFajr.isExtreme(), schedule.nextFajr().isExtreme());
+            }
+        }
+    }
+
+    @Test
+    public void testInstantsFollowTimeZoneOffsets() {
+        TimeZone zone = TimeZone.getTimeZone("Europe/London");
+        Location location = new Location(51.5, -0.12, 0, 0);
+        Jitl jitl = new Jitl(location, Method.MUSLIM_LEAGUE);
+        DaySchedule schedule = new DaySchedule();
+        long[] instants = new long[6 * 5];
+
+        // Clocks go forward on 31 March 2024
+        assertEquals(5, jitl.getPrayerInstantsRange(new SimpleDate(29, 3, 2024), new SimpleDate(2, 4, 2024), zone, instants));
+        for (int i = 0; i < 5; i++) {
+            SimpleDate date = i < 3 ? new SimpleDate(29 + i, 3, 2024) : new SimpleDate(i - 2, 4, 2024);
+            long midnight = (long) (AstroLib.getJulianDay(date, 0) - 2440587.5) * 86400;
+            int offset = i < 2 ? 0 : 3600; // from 31 March
+            Jitl fixed = new Jitl(new Location(51.5, -0.12, offset / 3600, 0), Method.MUSLIM_LEAGUE);
+            Prayer[] prayers = fixed.getPrayerTimes(date).getPrayers();
+
+            for (int k = 0; k < 6; k++) {
+                long expected = midnight + prayers[k].getHour() * 3600 + prayers[k].getMinute() * 60 + prayers[k].getSecond() - offset;
+                assertEquals(expected, instants[i * 6 + k]);
+            }
+
+            jitl.getDaySchedule(date, zone, schedule);
+            assertSamePrayers(fixed.getPrayerTimes(date), schedule.getDayPrayers());
+            for (int k = 0; k < 6; k++) {
+                assertEquals(instants[i * 6 + k], schedule.getInstant(k));
+            }
+            assertTrue(schedule.getInstant(6) > schedule.getInstant(5));
+        }
+        // The clock change does not move the instants by an hour
+        long fajrStep = instants[3 * 6] - instants[2 * 6];
+        assertTrue(Math.abs(fajrStep - 86400) < 600);
+    }
+
+    @Test
+    public void testZoneCallRestoresLocationOnFailure() {
+        TimeZone zone = TimeZone.getTimeZone("Asia/Tokyo");
+        Location location = new Location(35.68, 139.69, 0, 0);
+        Jitl jitl = new Jitl(location, Method.MUSLIM_LEAGUE);
+        SimpleDate date = new SimpleDate(1, 6, 2024);
+
+        // A null method fails once the zone location is bound
+        jitl.setMethod(null);
+        try {
+            jitl.getDaySchedule(date, zone, new DaySchedule());
+            fail();
+        } catch (NullPointerException e) {
+            // expected
+        }
+        try {
+            jitl.getPrayerInstantsRange(date, date, zone, new long[6]);
+            fail();
+        } catch (NullPointerException e) {
+            // expected
+        }
+        jitl.setMethod(Method.MUSLIM_LEAGUE);
+        assertSamePrayers(new Jitl(location, Method.MUSLIM_LEAGUE).getPrayerTimes(date), jitl.getPrayerTimes(date));
+    }
+
+    @Test
+    public void testPrayerEventsMatchInstantsInSequenceAndInParallel() {
+        TimeZone zone = TimeZone.getTimeZone("America/New_York");
+        Jitl jitl = new Jitl(new Location(40.71, -74.0, -5, 0), Method.ISNA);
+        SimpleDate from = new SimpleDate(1, 1, 2024);
+        SimpleDate to = new SimpleDate(31, 12, 2025);
+        long[] instants = new long[6 * 731];
+
+        assertEquals(731, jitl.getPrayerInstantsRange(from, to, zone, instants));
+        List<PrayerEvent> events = jitl.getPrayerEvents(from, to, zone).collect(Collectors.toList());
+        assertEquals(instants.length, events.size());
+        for (int i = 0; i < instants.length; i++) {
+            assertEquals(instants[i], events.get(i).getInstant());
+        }
+        assertEquals(2, events.get(6).getDate().getDay());
+        assertEquals(PrayerTime.SHUROOQ, events.get(7).getKind());
+
+        List<Long> parallel = jitl.getPrayerEvents(from, to, zone).parallel()
+                .map(PrayerEvent::getInstant).collect(Collectors.toList());
+        for (int i = 0; i < instants.length; i++) {
+            assertEquals(instants[i], (long) parallel.get(i));
+        }
+
+        // Unbounded range with the location offset, consumed lazily: 1 December 2025 is in standard time
+        PrayerEvent ishaa = jitl.getPrayerEvents(from, null, null).skip(6 * 700 + 5).findFirst().get();
+        assertEquals(PrayerTime.ISHAA, ishaa.getKind());
+        assertEquals(instants[6 * 700 + 5], ishaa.getInstant());
+    }
+
+    @Test
+    public void testPrayerCacheSharesGridCells() {
+        PrayerCache cache = new PrayerCache(2, 0.01);
+        Method method = Method.ISNA.copy();
+        SimpleDate date = new SimpleDate(10, 5, 2024);
+        Location cell = new Location(40.71, -74.01, -4, 0);
+
+        DayPrayers first = cache.getPrayerTimes(new Location(40.7128, -74.0060, -4, 0), method, date);
+        DayPrayers second = cache.getPrayerTimes(new Location(40.7061, -74.0149, -4, 0), method.copy(), date);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertSamePrayers(new Jitl(cell, method).getPrayerTimes(date), first);
+        assertSamePrayers(first, second);
+        assertEquals(new MethodKey(Method.ISNA), new MethodKey(method));
+        assertEquals(new LocationKey(cell, 0.01).hashCode(), new LocationKey(cell.copy(), 0.01).hashCode());
+
+        // Another method, then another day: the least recently used day is dropped
+        method.setMathhab(Mathhab.HANAFI);
+        cache.getPrayerTimes(cell, method, date);
+        cache.getPrayerTimes(cell, method, new SimpleDate(11, 5, 2024));
+        assertEquals(2, cache.size());
+        cache.getPrayerTimes(cell, Method.ISNA, date);
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void testBatchMatchesJitl() {
+        double[] lat = { 21.42, 51.5, -33.9, 65, 40.71, 78.2 };
+        double[] lon = { 39.82, -0.12, 151.2, 25.5, -74.0, 15.6 };
+        double[] sea = { 277, 0, 58, 0, 10, 1200 };
+        int[] seconds = new int[6 * lat.length];
+        boolean[] extremes = new boolean[6 * lat.length];
+        SimpleDate date = new SimpleDate(21, 6, 2024);
+        Method method = Method.MUSLIM_LEAGUE.copy();
+        method.setExtremeLatitude(ExtremeLatitude.GOOD_INVALID);
+
+        // London, Oulu and Svalbard need the extreme latitude method in june
+        assertEquals(3, new BatchJitl(method).getPrayerTimes(date, 2, lat, lon, sea, lat.length, seconds, extremes));
+        for (int i = 0; i < lat.length; i++) {
+            Location location = new Location(lat[i], lon[i], 2, 0);
+            location.setSeaLevel(sea[i]);
+            Timetable expected = new Jitl(location, method).getTimetable(date, date);
+            for (int k = 0; k < Timetable.PRAYERS; k++) {
+                assertEquals(expected.getSeconds(0, k), seconds[k * lat.length + i]);
+                assertEquals(expected.isExtreme(0, k), extremes[k * lat.length + i]);
+            }
+        }
+    }
+
+    @Test
+    public void testSelectedPrayersMatchPrayerTimes() {
+        ExtremeLatitude[] extremes = { ExtremeLatitude.NONE_EX, ExtremeLatitude.LAT_ALL, ExtremeLatitude.GOOD_INVALID,
+                ExtremeLatitude.SEVEN_NIGHT_INVALID, ExtremeLatitude.SEVEN_DAY_ALWAYS, ExtremeLatitude.HALF_ALWAYS,
+                ExtremeLatitude.MIN_INVALID };
+        Method[] methods = { Method.MUSLIM_LEAGUE, Method.UMM_ALQURRA };
+        Location location = new Location(60.17, 24.94, 2, 0);
+        DayPrayers expected = new DayPrayers();
+        DayPrayers actual = new DayPrayers();
+
+        for (Method base : methods) {
+            for (ExtremeLatitude extreme : extremes) {
+                Method method = base.copy();
+                method.setExtremeLatitude(extreme);
+                Jitl full = new Jitl(location, method);
+                Jitl selective = new Jitl(location, method);
+                for (int day = 1; day <= 365; day += 13) {
+                    SimpleDate date = new SimpleDate(day, 1, 2024);
+                    full.getPrayerTimes(date, expected);
+                    for (int k = 0; k < 6; k++) {
+                        selective.getPrayerTimes(date, new PrayerTime[] { PrayerTime.IMSAAK, Jitl.TIME_ARRAY[k] }, actual);
+                        Prayer e = expected.getPrayers()[k];
+                        Prayer a = actual.getPrayers()[k];
+                        assertEquals(e.toString(), a.toString());
+                        assertEquals(e.isExtreme(), a.isExtreme());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAltitudeTimesMatchSunriseAndSunset() {
+        Method method = Method.MUSLIM_LEAGUE.copy();
+        method.setRound(Rounding.NONE);
+        Jitl jitl = new Jitl(new Location(51.5, -0.12, 0, 0), method);
+        double[] altitudes = { Utils.CENTER_OF_SUN_ANGLE, Utils.CENTER_OF_SUN_ANGLE, -6 };
+        boolean[] setting = { false, true, true };
+        double[] hours = new double[3];
+        double[] tomorrow = new double[3];
+        double[] night = new double[2];
+
+        for (int day = 1; day <= 365; day += 11) {
+            DayPrayers pt = jitl.getPrayerTimes(new SimpleDate(day, 1, 2024));
+            jitl.getAltitudeTimes(new SimpleDate(day, 1, 2024), altitudes, setting, 3, hours);
+            jitl.getAltitudeTimes(new SimpleDate(day + 1, 1, 2024), altitudes, setting, 3, tomorrow);
+            jitl.getNightTimes(new SimpleDate(day, 1, 2024), night);
+            assertEquals(hours(pt.shuruq()), hours[0], 1 / 60.0);
+            assertEquals(hours(pt.maghrib()), hours[1], 1 / 60.0);
+            assertTrue(hours[2] > hours[1]);
+
+            // The night ends with the sunrise of the next day
+            assertEquals(hours[1] + (tomorrow[0] + 24 - hours[1]) / 2, night[0], 10 / 3600.0);
+            assertEquals(hours[1] + (tomorrow[0] + 24 - hours[1]) * 2 / 3, night[1], 10 / 3600.0);
+        }
+    }
+
+    @Test
+    public void testPrayerTimesDoNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        Jitl jitl = new Jitl(new Location(21.42, 39.82, 3, 0), Method.UMM_ALQURRA);
+        DayPrayers prayers = new DayPrayers();
+        SimpleDate date = new SimpleDate(1, 1, 1970);
+        int days = 2000;
+        long epochDay = 7000, before, after;
+
+        // Warm up, so that neither the class loading nor the interpreter is measured
+        for (long d = 0; d < 20000; d++) {
+            Jitl.setEpochDay(date, epochDay++);
+            jitl.getPrayerTimes(date, prayers);
+        }
+
+        // Days the ephemeris store has not seen, then the same days again
+        for (int pass = 0; pass < 2; pass++) {
+            before = threads.getCurrentThreadAllocatedBytes();
+            for (long d = 0; d < days; d++) {
+                Jitl.setEpochDay(date, epochDay + d);
+                jitl.getPrayerTimes(date, prayers);
+            }
+            after = threads.getCurrentThreadAllocatedBytes();
+            assertTrue((after - before) + " bytes", after - before < days);
+        }
+    }
+
+    // Geometric altitude of the centre of the sun, from the geocentric values
+    private static double sunAltitude(double lat, double lon, double julianDay) {
+        AstroDay day = new AstroDay();
+        AstroLib.computeAstroDay(julianDay, day);
+        double h = Math.toRadians(day.getSidtime() + lon - day.getRa());
+        double phi = Math.toRadians(lat);
+        return Math.toDegrees(Math.asin(Math.sin(phi) * Math.sin(day.getDec())
+                + Math.cos(phi) * Math.cos(day.getDec()) * Math.cos(h)));
+    }
+
+    @Test
+    public void testAltitudeTimesNearTheLowestAltitude() {
+        double[] altitudes = { -18, -18 };
+        boolean[] setting = { false, true };
+        double[] hours = new double[2];
+        Jitl london = new Jitl(new Location(51.5, -0.12, 0, 0), Method.MUSLIM_LEAGUE);
+        Jitl reykjavik = new Jitl(new Location(64.1, -21.9, 0, 0), Method.MUSLIM_LEAGUE);
+
+        // The sun stays above -18 degrees in London, and above -16.8 in Reykjavik
+        london.getAltitudeTimes(new SimpleDate(22, 5, 2024), altitudes, setting, 2, hours);
+        assertEquals(99, hours[1], 0);
+        reykjavik.getAltitudeTimes(new SimpleDate(12, 4, 2024), new double[] { -17 }, new boolean[] { true }, 1, hours);
+        assertEquals(99, hours[0], 0);
+
+        // Around the nights where -18 degrees stops being reached, a time is
+        // either 99 or at the altitude
+        for (int day = 120; day <= 230; day++) {
+            SimpleDate date = new SimpleDate(day, 1, 2024);
+            double julianDay = AstroLib.getJulianDay(date, 0);
+            london.getAltitudeTimes(date, altitudes, setting, 2, hours);
+            for (int i = 0; i < 2; i++) {
+                if (hours[i] != 99) {
+                    assertEquals(-18, sunAltitude(51.5, -0.12, julianDay + hours[i] / 24), 0.01);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testQiblaBatchMatchesNorthQibla() {
+        double[] lat = { 51.5, 21.42, -33.9, 64.0, 0, -21.423333 };
+        double[] lon = { -0.12, 39.82, 151.2, -21.9, -100, -140.176667 };
+        double[] bearings = new double[lat.length];
+        double[] distances = new double[lat.length];
+
+        Jitl.getNorthQibla(lat, lon, lat.length, bearings, distances);
+        for (int i = 0; i < lat.length; i++) {
+            Dms expected = Jitl.getNorthQibla(new Location(lat[i], lon[i], 0, 0));
+            assertEquals(expected.getDecimalValue(Direction.NORTH), bearings[i], 1e-9);
+        }
+        assertEquals(4790, distances[0], 20);
+        assertEquals(0, distances[1], 1);
+        // The antipode of the Kaaba is half the circumference away
+        assertEquals(Math.PI * Jitl.EARTH_RADIUS, distances[5], 1e-3);
+
+        // Without distances, only the first count bearings are written
+        double first = bearings[0];
+        Arrays.fill(bearings, -1);
+        Jitl.getNorthQibla(lat, lon, 1, bearings, null);
+        assertEquals(first, bearings[0], 0);
+        for (int i = 1; i < lat.length; i++) {
+            assertEquals(-1, bearings[i], 0);
+        }
+    }
+
+    @Test
+    public void testQiblaGridStaysCloseToNorthQibla() {
+        QiblaGrid grid = new QiblaGrid(1, 0.01);
+        Random random = new Random(1);
+
+        assertTrue(grid.getMaxError() <= 0.01);
+        assertTrue(grid.isSingular(21.4225, 39.8262));
+        assertTrue(grid.isSingular(-21.4225, -140.1738));
+        assertFalse(grid.isSingular(51.5, -0.12));
+        for (int i = 0; i < 10000; i++) {
+            double lat = random.nextDouble() * 180 - 90;
+            double lon = random.nextDouble() * 360 - 180;
+            double expected = Jitl.getNorthQibla(new Location(lat, lon, 0, 0)).getDecimalValue(Direction.NORTH);
+            double error = Math.abs(expected - grid.getDirection(lat, lon));
+            assertEquals(0, Math.min(error, 360 - error), grid.isSingular(lat, lon) ? 0 : 0.02);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testQiblaGridRejectsLatitudeOutOfRange() {
+        new QiblaGrid(1, 0.01).getDirection(91, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testQiblaGridRejectsStepNotDividing180() {
+        new QiblaGrid(0.7, 0.01);
+    }
+
+    private static double hours(Prayer prayer) {
+        return prayer.getHour() + prayer.getMinute() / 60.0 + prayer.getSecond() / 3600.0;
+    }
+
+    @Test
+    public void testNextEventMatchesInstants() {
+        TimeZone zone = TimeZone.getTimeZone("Europe/London");
+        Location location = new Location(51.5, -0.12, 0, 0);
+        Jitl jitl = new Jitl(location, Method.ISNA);
+        long[] instants = new long[6 * 40];
+
+        // Across the clock change of 30 March 2025
+        assertEquals(40, new Jitl(location, Method.ISNA).getPrayerInstantsRange(new SimpleDate(10, 3, 2025), new SimpleDate(18, 4, 2025), zone, instants));
+        for (int i = 0; i < 6 * 30; i++) {
+            PrayerEvent next = jitl.nextEvent(instants[i], zone);
+            assertEquals(instants[i + 1], next.getInstant());
+            assertSame(next, jitl.nextEvent(instants[i + 1] - 1, zone));
+            assertEquals(Jitl.TIME_ARRAY[(i + 1) % 6], next.getKind());
+        }
+
+        // The kept events are dropped when the location changes
+        location.setDegreeLong(2.35);
+        long[] paris = new long[6 * 2];
+        new Jitl(location, Method.ISNA).getPrayerInstantsRange(new SimpleDate(30, 3, 2025), new SimpleDate(31, 3, 2025), zone, paris);
+        assertEquals(paris[6 + 1], jitl.nextEvent(paris[6], zone).getInstant());
+    }
+
+    @Test
+    public void testConcurrentJitlMatchesJitl() throws Exception {
+        final ConcurrentJitl engine = new ConcurrentJitl();
+        final Method[] methods = { Method.ISNA, Method.MUSLIM_LEAGUE, Method.EGYPT_SURVEY, Method.UMM_ALQURRA };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        try {
+            for (int t = 0; t < 8; t++) {
+                final Location location = new Location(20 + 5 * t, -10 + 7 * t, t % 3, 0);
+                final Method method = methods[t % methods.length];
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        Jitl expected = new Jitl(location, method);
+                        for (int day = 1; day <= 28; day++) {
+                            SimpleDate date = new SimpleDate(day, 2, 2024);
+                            DayPrayers actual = engine.getPrayerTimes(location, method, date);
+                            assertSamePrayers(expected.getPrayerTimes(date), actual);
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package net.sourceforge.jitl.astro;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+public class AstroLibTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void assertSameDay(AstroDay expected, AstroDay actual) {
+        assertEquals(expected.getRa(), actual.getRa(), 0);
+        assertEquals(expected.getDec(), actual.getDec(), 0);
+        assertEquals(expected.getSidtime(), actual.getSidtime(), 0);
+        assertEquals(expected.getRsum(), actual.getRsum(), 0);
+    }
+
+    @Test
+    public void testEphemerisCacheReturnsComputedValues() {
+        double jd = AstroLib.getJulianDay(new SimpleDate(15, 6, 2024), 3);
+        AstroDay expected = new AstroDay();
+        AstroDay cached = new AstroDay();
+        AstroLib.computeAstroDay(jd, expected);
+
+        EphemerisCache.clear();
+        EphemerisCache.getAstroDay(jd, cached); // miss, computes and stores
+        assertSameDay(expected, cached);
+        cached = new AstroDay();
+        EphemerisCache.getAstroDay(jd, cached); // hit
+        assertSameDay(expected, cached);
+    }
+
+    @Test
+    public void testEphemerisCacheSeparatesTimeZones() {
+        SimpleDate date = new SimpleDate(1, 1, 2025);
+        double jdA = AstroLib.getJulianDay(date, 0);
+        double jdB = AstroLib.getJulianDay(date, 5.5);
+        AstroDay expected = new AstroDay();
+        AstroDay cached = new AstroDay();
+
+        EphemerisCache.getAstroDay(jdA, cached);
+        EphemerisCache.getAstroDay(jdB, cached);
+        AstroLib.computeAstroDay(jdB, expected);
+        assertSameDay(expected, cached);
+        assertNotEquals(EphemerisCache.slot(jdA), EphemerisCache.slot(jdB));
+        assertEquals((EphemerisCache.slot(jdA) + 1) % EphemerisCache.SIZE, EphemerisCache.slot(jdA + 1));
+    }
+
+    @Test
+    public void testChebyshevEphemerisStaysWithinMaxError() {
+        double maxError = 1e-7;
+        ChebyshevEphemeris ephemeris = new ChebyshevEphemeris(new SimpleDate(1, 1, 2024), new SimpleDate(31, 12, 2024), 32, maxError);
+        AstroDay expected = new AstroDay();
+        AstroDay actual = new AstroDay();
+
+        assertEquals(0, ephemeris.getFallbackIntervals());
+        assertTrue(ephemeris.getMeasuredError() <= maxError);
+        for (double jd = ephemeris.getStartJd(); jd < ephemeris.getEndJd(); jd += 0.77) {
+            AstroLib.computeAstroDay(jd, expected);
+            ephemeris.computeAstroDay(jd, actual);
+            assertEquals(0, ChebyshevEphemeris.wrap180(expected.getRa() - actual.getRa()), maxError);
+            assertEquals(Utils.RAD_TO_DEG(expected.getDec()), Utils.RAD_TO_DEG(actual.getDec()), maxError);
+            assertEquals(0, ChebyshevEphemeris.wrap180(expected.getSidtime() - actual.getSidtime()), maxError);
+            assertEquals(expected.getRsum(), actual.getRsum(), maxError);
+        }
+
+        // Outside of the fitted period the full series is used
+        double outside = ephemeris.getEndJd() + 10;
+        AstroLib.computeAstroDay(outside, expected);
+        ephemeris.computeAstroDay(outside, actual);
+        assertSameDay(expected, actual);
+    }
+
+    @Test
+    public void testLowPrecisionEphemerisStaysCloseToFullSeries() {
+        LowPrecisionEphemeris ephemeris = new LowPrecisionEphemeris();
+        AstroDay expected = new AstroDay();
+        AstroDay actual = new AstroDay();
+
+        for (double jd = AstroLib.getJulianDay(new SimpleDate(1, 1, 1950), 0); jd < 2488070; jd += 13.37) {
+            AstroLib.computeAstroDay(jd, expected);
+            ephemeris.computeAstroDay(jd, actual);
+            assertEquals(0, ChebyshevEphemeris.wrap180(expected.getRa() - actual.getRa()), 0.015);
+            assertEquals(Utils.RAD_TO_DEG(expected.getDec()), Utils.RAD_TO_DEG(actual.getDec()), 0.005);
+            assertEquals(0, ChebyshevEphemeris.wrap180(expected.getSidtime() - actual.getSidtime()), 0.001);
+            assertEquals(expected.getRsum(), actual.getRsum(), 1e-4);
+        }
+    }
+
+    @Test
+    public void testMappedEphemerisReadsWrittenFile() throws Exception {
+        File file = folder.newFile("ephemeris.bin");
+        int count = EphemerisFile.write(file, 2024, 2024);
+        MappedEphemeris ephemeris = new MappedEphemeris(file);
+        AstroDay expected = new AstroDay();
+        AstroDay actual = new AstroDay();
+
+        assertEquals(count, ephemeris.getCount());
+        assertEquals(EphemerisFile.HEADER_SIZE + count * EphemerisFile.RECORD_SIZE, file.length());
+
+        // Records are read as written
+        double jd = ephemeris.getStartJd() + 100;
+        AstroLib.computeAstroDay(jd, expected);
+        ephemeris.computeAstroDay(jd, actual);
+        assertSameDay(expected, actual);
+
+        // Other GMT differences are interpolated
+        jd = AstroLib.getJulianDay(new SimpleDate(20, 3, 2024), -5);
+        AstroLib.computeAstroDay(jd, expected);
+        ephemeris.computeAstroDay(jd, actual);
+        assertEquals(0, ChebyshevEphemeris.wrap180(expected.getRa() - actual.getRa()), 1e-6);
+        assertEquals(expected.getDec(), actual.getDec(), 1e-8);
+        assertEquals(0, ChebyshevEphemeris.wrap180(expected.getSidtime() - actual.getSidtime()), 1e-6);
+        assertEquals(expected.getRsum(), actual.getRsum(), 1e-8);
+    }
+
+    @Test
+    public void testSunPositionMatchesEphemerisAtInstant() {
+        Location location = new Location(51.5, -0.12, 0, 0);
+        SunPosition position = new SunPosition(location);
+        AstroDay day = new AstroDay();
+        double lat = Utils.DEG_TO_RAD(location.getDegreeLat());
+
+        // Forward over the march equinox by 7 minutes, then back by days
+        long start = 1710806400000L; // 19 March 2024
+        for (int i = 0; i < 2000; i++) {
+            long millis = i < 1000 ? start + i * 420000L : start - (i - 1000) * 86000000L;
+            position.compute(millis);
+            AstroLib.computeAstroDay(millis / 86400000.0 + 2440587.5, day);
+            double h = Utils.DEG_TO_RAD(day.getSidtime() + location.getDegreeLong() - day.getRa());
+            double altitude = Utils.RAD_TO_DEG(Math.asin(Math.sin(lat) * Math.sin(day.getDec())
+                    + Math.cos(lat) * Math.cos(day.getDec()) * Math.cos(h)));
+            double azimuth = Utils.RAD_TO_DEG(Math.atan2(-Math.cos(day.getDec()) * Math.sin(h),
+                    Math.sin(day.getDec()) * Math.cos(lat) - Math.cos(day.getDec()) * Math.cos(h) * Math.sin(lat)));
+            assertEquals(altitude, position.getAltitude(), 0.01);
+            assertEquals(0, ChebyshevEphemeris.wrap180(azimuth - position.getAzimuth()), 0.01);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package net.sourceforge.jitl.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.sourceforge.jitl.astro.Astro;
+import net.sourceforge.jitl.astro.AstroDay;
+import net.sourceforge.jitl.astro.AstroLib;
+import net.sourceforge.jitl.astro.EphemerisCache;
+import net.sourceforge.jitl.astro.Location;
+import net.sourceforge.jitl.astro.LocationContext;
+import net.sourceforge.jitl.astro.LowPrecisionEphemeris;
+import net.sourceforge.jitl.astro.SimpleDate;
+import net.sourceforge.jitl.astro.SunPosition;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Solar values of a day: the full series, the low precision ephemeris
+ * and the three paths of getAstroValuesByDay (same day, consecutive day
+ * and unrelated day). sunPosition measures one frame of an animation
+ * running at 60 Hz.
+ *
+ * The shared ephemeris cache is disabled unless <code>ephemerisCache</code>
+ * is true, so that the cold and shift paths measure the series.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class AstroBenchmark {
+
+	/* Days covered by the benchmarks, the julian day wraps around */
+	private static final int DAYS = 3650;
+
+	@Param({ "false", "true" })
+	public boolean ephemerisCache;
+
+	private LocationContext context;
+
+	private Astro astro;
+
+	private Astro topAstro;
+
+	private AstroDay astroDay;
+
+	private LowPrecisionEphemeris lowPrecision;
+
+	private SunPosition sunPosition;
+
+	private long millis;
+
+	private double startJd;
+
+	private int day;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		EphemerisCache.setEnabled(ephemerisCache);
+		EphemerisCache.clear();
+		context = new LocationContext(new Location(21.4225, 39.8262, 3, 0));
+		astro = new Astro();
+		topAstro = new Astro();
+		astroDay = new AstroDay();
+		lowPrecision = new LowPrecisionEphemeris();
+		sunPosition = new SunPosition(new Location(21.4225, 39.8262, 3, 0));
+		millis = 1704067200000L; /* 1 January 2024 */
+		startJd = AstroLib.getJulianDay(new SimpleDate(1, 1, 2024), 3);
+		day = 0;
+		AstroLib.getAstroValuesByDay(startJd, context, astro, topAstro,
+				astroDay, AstroLib.VSOP87);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		EphemerisCache.setEnabled(true);
+		EphemerisCache.clear();
+	}
+
+	@Benchmark
+	public double computeAstroDay() {
+		day = (day + 1) % DAYS;
+		AstroLib.computeAstroDay(startJd + day, astroDay);
+		return astroDay.getRa();
+	}
+
+	@Benchmark
+	public double computeLowPrecision() {
+		day = (day + 1) % DAYS;
+		lowPrecision.computeAstroDay(startJd + day, astroDay);
+		return astroDay.getRa();
+	}
+
+	@Benchmark
+	public double sunPosition() {
+		millis += 16;
+		sunPosition.compute(millis);
+		return sunPosition.getAltitude() + sunPosition.getAzimuth();
+	}
+
+	@Benchmark
+	public void astroValuesHit(Blackhole bh) {
+		AstroLib.getAstroValuesByDay(astro.getJd(), context, astro, topAstro,
+				astroDay, AstroLib.VSOP87);
+		bh.consume(topAstro.getRa()[1]);
+	}
+
+	@Benchmark
+	public void astroValuesShift(Blackhole bh) {
+		day = (day + 1) % DAYS;
+		AstroLib.getAstroValuesByDay(startJd + day, context, astro, topAstro,
+				astroDay, AstroLib.VSOP87);
+		bh.consume(topAstro.getRa()[1]);
+	}
+
+	@Benchmark
+	public void astroValuesCold(Blackhole bh) {
+		/* 7 days apart, no value of the window can be reused */
+		day = (day + 7) % DAYS;
+		AstroLib.getAstroValuesByDay(startJd + day, context, astro, topAstro,
+				astroDay, AstroLib.VSOP87);
+		bh.consume(topAstro.getRa()[1]);
+	}
+}
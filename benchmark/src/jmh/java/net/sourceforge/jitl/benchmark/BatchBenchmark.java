@@ -0,0 +1,89 @@
+package net.sourceforge.jitl.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.sourceforge.jitl.BatchJitl;
+import net.sourceforge.jitl.DayPrayers;
+import net.sourceforge.jitl.Jitl;
+import net.sourceforge.jitl.Method;
+import net.sourceforge.jitl.astro.Location;
+import net.sourceforge.jitl.astro.SimpleDate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * One day for many locations of the same time zone: BatchJitl against one
+ * Jitl moved from location to location. The times are per location.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class BatchBenchmark {
+
+	private static final int LOCATIONS = 10000;
+
+	private double lat[], lon[], sea[];
+
+	private int seconds[];
+
+	private BatchJitl batch;
+
+	private Location location;
+
+	private Jitl jitl;
+
+	private DayPrayers prayers;
+
+	private SimpleDate date;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(1);
+		int i;
+
+		lat = new double[LOCATIONS];
+		lon = new double[LOCATIONS];
+		sea = new double[LOCATIONS];
+		for (i = 0; i < LOCATIONS; i++) {
+			lat[i] = random.nextDouble() * 100 - 50;
+			lon[i] = random.nextDouble() * 30 - 15;
+			sea[i] = random.nextDouble() * 500;
+		}
+		seconds = new int[6 * LOCATIONS];
+		batch = new BatchJitl(Method.MUSLIM_LEAGUE);
+		location = new Location(0, 0, 1, 0);
+		jitl = new Jitl(location, Method.MUSLIM_LEAGUE);
+		prayers = new DayPrayers();
+		date = new SimpleDate(12, 3, 2025);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOCATIONS)
+	public int[] batch() {
+		batch.getPrayerTimes(date, 1, lat, lon, sea, LOCATIONS, seconds, null);
+		return seconds;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOCATIONS)
+	public DayPrayers scalar() {
+		int i;
+
+		for (i = 0; i < LOCATIONS; i++) {
+			location.setDegreeLat(lat[i]);
+			location.setDegreeLong(lon[i]);
+			location.setSeaLevel(sea[i]);
+			jitl.getPrayerTimes(date, prayers);
+		}
+		return prayers;
+	}
+}
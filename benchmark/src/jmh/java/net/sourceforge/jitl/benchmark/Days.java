@@ -0,0 +1,30 @@
+package net.sourceforge.jitl.benchmark;
+
+import java.util.GregorianCalendar;
+
+import net.sourceforge.jitl.astro.SimpleDate;
+
+/**
+ * Dates shared by the benchmarks
+ */
+class Days {
+
+	private Days() {
+	}
+
+	/**
+	 * @param year the year
+	 * @return every date of the year, in order
+	 */
+	static SimpleDate[] of(int year) {
+		GregorianCalendar cal = new GregorianCalendar(year, 0, 1);
+		SimpleDate dates[] = new SimpleDate[cal.getActualMaximum(GregorianCalendar.DAY_OF_YEAR)];
+		int i;
+
+		for (i = 0; i < dates.length; i++) {
+			dates[i] = new SimpleDate(cal);
+			cal.add(GregorianCalendar.DATE, 1);
+		}
+		return dates;
+	}
+}
@@ -0,0 +1,97 @@
+package net.sourceforge.jitl.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import net.sourceforge.jitl.DayPrayers;
+import net.sourceforge.jitl.ExtremeLatitude;
+import net.sourceforge.jitl.Jitl;
+import net.sourceforge.jitl.Method;
+import net.sourceforge.jitl.astro.Location;
+import net.sourceforge.jitl.astro.SimpleDate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Prayer times of consecutive days at high latitudes, with the extreme
+ * latitude methods. The days go through a whole year so that both the
+ * valid and the invalid days are measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class ExtremeLatitudeBenchmark {
+
+	@Param({ "55", "65", "75" })
+	public double latitude;
+
+	@Param({ "LAT_ALL", "LAT_INVALID", "GOOD_ALL", "GOOD_INVALID",
+			"GOOD_DIF", "SEVEN_NIGHT_INVALID", "SEVEN_DAY_INVALID",
+			"HALF_INVALID", "MIN_INVALID" })
+	public String extreme;
+
+	private Jitl jitl;
+
+	private SimpleDate dates[];
+
+	private DayPrayers prayers;
+
+	private int day;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Method method = Method.MUSLIM_LEAGUE.copy();
+
+		method.setExtremeLatitude(extremeLatitude(extreme));
+		jitl = new Jitl(new Location(latitude, 18.0686, 1, 0), method);
+		dates = Days.of(2024);
+		prayers = new DayPrayers();
+		day = 0;
+	}
+
+	@Benchmark
+	public DayPrayers getPrayerTimes() {
+		day = (day + 1) % dates.length;
+		jitl.getPrayerTimes(dates[day], prayers);
+		return prayers;
+	}
+
+	static ExtremeLatitude extremeLatitude(String name) {
+		if (name.equals("LAT_ALL"))
+			return ExtremeLatitude.LAT_ALL;
+		if (name.equals("LAT_ALWAYS"))
+			return ExtremeLatitude.LAT_ALWAYS;
+		if (name.equals("LAT_INVALID"))
+			return ExtremeLatitude.LAT_INVALID;
+		if (name.equals("GOOD_ALL"))
+			return ExtremeLatitude.GOOD_ALL;
+		if (name.equals("GOOD_INVALID"))
+			return ExtremeLatitude.GOOD_INVALID;
+		if (name.equals("GOOD_DIF"))
+			return ExtremeLatitude.GOOD_DIF;
+		if (name.equals("SEVEN_NIGHT_ALWAYS"))
+			return ExtremeLatitude.SEVEN_NIGHT_ALWAYS;
+		if (name.equals("SEVEN_NIGHT_INVALID"))
+			return ExtremeLatitude.SEVEN_NIGHT_INVALID;
+		if (name.equals("SEVEN_DAY_ALWAYS"))
+			return ExtremeLatitude.SEVEN_DAY_ALWAYS;
+		if (name.equals("SEVEN_DAY_INVALID"))
+			return ExtremeLatitude.SEVEN_DAY_INVALID;
+		if (name.equals("HALF_ALWAYS"))
+			return ExtremeLatitude.HALF_ALWAYS;
+		if (name.equals("HALF_INVALID"))
+			return ExtremeLatitude.HALF_INVALID;
+		if (name.equals("MIN_ALWAYS"))
+			return ExtremeLatitude.MIN_ALWAYS;
+		if (name.equals("MIN_INVALID"))
+			return ExtremeLatitude.MIN_INVALID;
+		return ExtremeLatitude.NONE_EX;
+	}
+}
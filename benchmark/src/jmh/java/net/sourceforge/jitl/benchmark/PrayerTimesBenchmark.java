@@ -0,0 +1,63 @@
+package net.sourceforge.jitl.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import islam.athanalarm.CONSTANT;
+import net.sourceforge.jitl.DayPrayers;
+import net.sourceforge.jitl.Jitl;
+import net.sourceforge.jitl.astro.Location;
+import net.sourceforge.jitl.astro.SimpleDate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Prayer times of consecutive days with each method of
+ * <code>CONSTANT.CALCULATION_METHODS</code>, the index of the method being
+ * the one stored in the preferences.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class PrayerTimesBenchmark {
+
+	@Param({ "0", "1", "2", "3", "4", "5", "6" })
+	public int method;
+
+	private Jitl jitl;
+
+	private SimpleDate dates[];
+
+	private DayPrayers prayers;
+
+	private int day;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		jitl = new Jitl(new Location(43.6532, -79.3832, -5, 0),
+				CONSTANT.CALCULATION_METHODS[method]);
+		dates = Days.of(2024);
+		prayers = new DayPrayers();
+		day = 0;
+	}
+
+	@Benchmark
+	public DayPrayers getPrayerTimes() {
+		day = (day + 1) % dates.length;
+		jitl.getPrayerTimes(dates[day], prayers);
+		return prayers;
+	}
+
+	@Benchmark
+	public DayPrayers getPrayerTimesNew() {
+		day = (day + 1) % dates.length;
+		return jitl.getPrayerTimes(dates[day]);
+	}
+}
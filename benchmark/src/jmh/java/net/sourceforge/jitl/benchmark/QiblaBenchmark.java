@@ -0,0 +1,91 @@
+package net.sourceforge.jitl.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.sourceforge.jitl.Jitl;
+import net.sourceforge.jitl.QiblaGrid;
+import net.sourceforge.jitl.astro.Direction;
+import net.sourceforge.jitl.astro.Location;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Qibla of many locations: the batch directions, with and without the
+ * distances, and the lookups of a 0.1 degree grid, against a Location and
+ * a Dms for each location. The times are per location.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class QiblaBenchmark {
+
+	private static final int LOCATIONS = 10000;
+
+	private double lat[], lon[];
+
+	private double bearings[], distances[];
+
+	private QiblaGrid grid;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(1);
+		int i;
+
+		lat = new double[LOCATIONS];
+		lon = new double[LOCATIONS];
+		for (i = 0; i < LOCATIONS; i++) {
+			lat[i] = random.nextDouble() * 140 - 70;
+			lon[i] = random.nextDouble() * 360 - 180;
+		}
+		bearings = new double[LOCATIONS];
+		distances = new double[LOCATIONS];
+		grid = new QiblaGrid(0.1, 0.001);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOCATIONS)
+	public double[] batch() {
+		Jitl.getNorthQibla(lat, lon, LOCATIONS, bearings, null);
+		return bearings;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOCATIONS)
+	public double[] batchWithDistances() {
+		Jitl.getNorthQibla(lat, lon, LOCATIONS, bearings, distances);
+		return distances;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOCATIONS)
+	public double[] grid() {
+		int i;
+
+		for (i = 0; i < LOCATIONS; i++) {
+			bearings[i] = grid.getDirection(lat[i], lon[i]);
+		}
+		return bearings;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOCATIONS)
+	public double[] scalar() {
+		int i;
+
+		for (i = 0; i < LOCATIONS; i++) {
+			bearings[i] = Jitl.getNorthQibla(new Location(lat[i], lon[i], 0, 0))
+					.getDecimalValue(Direction.NORTH);
+		}
+		return bearings;
+	}
+}
@@ -0,0 +1,105 @@
+package net.sourceforge.jitl.benchmark;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import net.sourceforge.jitl.DayPrayers;
+import net.sourceforge.jitl.Jitl;
+import net.sourceforge.jitl.Method;
+import net.sourceforge.jitl.Prayer;
+import net.sourceforge.jitl.PrayerEvent;
+import net.sourceforge.jitl.PrayerTime;
+import net.sourceforge.jitl.astro.Dms;
+import net.sourceforge.jitl.astro.Location;
+import net.sourceforge.jitl.astro.SimpleDate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Single value queries of Jitl: imsaak, fajr of the next day, a single
+ * prayer of the day, four sun altitudes, next event and qibla. nextEvent
+ * moves a minute forward on each call, so the kept events are computed
+ * again once every few days of queries.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class QueriesBenchmark {
+
+	private Jitl jitl;
+
+	private SimpleDate dates[];
+
+	private int day;
+
+	private TimeZone zone;
+
+	private long instant;
+
+	private DayPrayers prayers;
+
+	private PrayerTime ishaa[];
+
+	private double altitudes[], hours[];
+
+	private boolean setting[];
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		jitl = new Jitl(new Location(30.0444, 31.2357, 2, 0),
+				Method.EGYPT_SURVEY);
+		dates = Days.of(2024);
+		day = 0;
+		zone = TimeZone.getTimeZone("Africa/Cairo");
+		instant = 1704067200; /* 1 January 2024 */
+		prayers = new DayPrayers();
+		ishaa = new PrayerTime[] { PrayerTime.ISHAA };
+		altitudes = new double[] { -12, -6, -6, -12 }; /* twilights */
+		setting = new boolean[] { false, false, true, true };
+		hours = new double[4];
+	}
+
+	@Benchmark
+	public Prayer getImsaak() {
+		day = (day + 1) % dates.length;
+		return jitl.getImsaak(dates[day]);
+	}
+
+	@Benchmark
+	public Prayer getNextDayFajr() {
+		day = (day + 1) % dates.length;
+		return jitl.getNextDayFajr(dates[day]);
+	}
+
+	@Benchmark
+	public Prayer getIshaa() {
+		day = (day + 1) % dates.length;
+		jitl.getPrayerTimes(dates[day], ishaa, prayers);
+		return prayers.ishaa();
+	}
+
+	@Benchmark
+	public double[] getAltitudeTimes() {
+		day = (day + 1) % dates.length;
+		jitl.getAltitudeTimes(dates[day], altitudes, setting, 4, hours);
+		return hours;
+	}
+
+	@Benchmark
+	public PrayerEvent nextEvent() {
+		instant += 60;
+		return jitl.nextEvent(instant, zone);
+	}
+
+	@Benchmark
+	public Dms getNorthQibla() {
+		return jitl.getNorthQibla();
+	}
+}